@@ -6,16 +6,23 @@ import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.DeliverCallback;
 
 import com.wind.entities.MicrocontrollerEntity;
+import com.wind.entities.WeatherAggregate;
 import com.wind.entities.WeatherData;
+import com.wind.entities.WeatherPage;
 import com.wind.entities.ClientEntity;
+import com.wind.datastructures.HashMetrics;
+import com.wind.message.WeatherCodec;
+import com.wind.model.DAO.AggregateDAO;
 import com.wind.model.DAO.LogDAO;
 import com.wind.model.DAO.WeatherDataDAO;
 import com.wind.model.DAO.ClientDAO;
+import com.wind.service.RetentionCompactor;
 import com.wind.service.ServiceInstancePayload;
 import com.wind.service.ServiceRegistrar;
 import com.wind.security.RSA;
 
 import io.javalin.Javalin;
+import io.javalin.http.ServiceUnavailableResponse;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -23,6 +30,7 @@ import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,12 +40,32 @@ public class ApplicationServer {
     private static final int HTTP_PORT = 8080;
     private static final String SERVICE_NAME_IN_DISCOVERY = "application-server";
 
+    // Paginação de /app/weather
+    private static final int PAGE_LIMIT_DEFAULT = 500;
+    private static final int PAGE_LIMIT_MAX = 5000;
+
+    private static final String SESSION_HEADER = "X-Session-Token";
+
+    // Paginação de /app/logs
+    private static final int LOG_LIMIT_DEFAULT = 100;
+    private static final int LOG_LIMIT_MAX = 5000;
+
     private static final ServiceRegistrar serviceRegistrar = new ServiceRegistrar();
     private static ServiceInstancePayload servicePayload;
 
-    // Restaurando os DAOs conforme o projeto original
-    private static final WeatherDataDAO weatherDataDAO = new WeatherDataDAO();
-    private static final ClientDAO clientDAO = new ClientDAO();
+    // Os DAOs são carregados (snapshot + replay do WAL) em segundo plano depois que o HTTP sobe;
+    // até lá /health responde 503 e as rotas de dados recusam requisições
+    private static volatile WeatherDataDAO weatherDataDAO;
+    private static volatile ClientDAO clientDAO;
+    private static volatile AggregateDAO aggregateDAO;
+    private static volatile RetentionCompactor retentionCompactor;
+    private static volatile boolean ready = false;
+
+    // Quanto tempo uma leitura pode chegar atrasada e manter o próprio horário (ex.: replay do spill da estação)
+    private static final long ATRASO_MAXIMO_INGESTAO_MS = TimeUnit.MINUTES.toMillis(
+            Long.parseLong(System.getenv().getOrDefault("INGEST_MAX_DELAY_MINUTES", "1440")));
+    // Horário da última leitura persistida; os seguintes nunca ficam antes dele
+    private static long ultimoTempoIngestao = Long.MIN_VALUE;
     @SuppressWarnings("unused")
     private static final LogDAO logDAO = new LogDAO();
 
@@ -66,17 +94,55 @@ public class ApplicationServer {
         Javalin app = Javalin.create().start("0.0.0.0", HTTP_PORT);
         System.out.println("Application Server (HTTP) iniciado na porta " + HTTP_PORT);
 
-        boolean registered = registerService();
-        if (registered) {
-            // Só inicia o heartbeat se o registro inicial foi bem-sucedido
-            serviceRegistrar.startHeartbeat();
-            // Adiciona um gancho de desligamento para parar o heartbeat de forma limpa
-            Runtime.getRuntime().addShutdownHook(new Thread(serviceRegistrar::shutdown));
-        } else {
-            System.err.println("Aplicação iniciando em modo degradado pois não conseguiu se registrar no Service Discovery.");
-        }
+        app.get("/health", ctx -> {
+            if (ready) {
+                ctx.status(200).result("OK");
+            } else {
+                ctx.status(503).result("STARTING");
+            }
+        });
+
+        // Segurança, logs e métricas não dependem da base e continuam respondendo durante a carga
+        app.before("/app/*", ctx -> {
+            if (!ready && !disponivelDuranteCarga(ctx.path())) {
+                throw new ServiceUnavailableResponse("Base de dados ainda carregando, tente novamente em instantes.");
+            }
+        });
+
+        app.get("/app/metrics/hash", ctx -> {
+            ctx.status(200).json(HashMetrics.snapshotAll());
+        });
 
-        app.get("/health", ctx -> ctx.status(200).result("OK"));
+        // Log paginado pelo número da linha: /app/logs?from=N&limit=M e /app/logs/tail?lines=M
+        app.get("/app/logs", ctx -> {
+            String fromParam = ctx.queryParam("from");
+            String limitParam = ctx.queryParam("limit");
+            try {
+                long from = fromParam != null ? Long.parseLong(fromParam) : 0L;
+                int limite = limitParam != null ? Integer.parseInt(limitParam) : LOG_LIMIT_DEFAULT;
+                if (from < 0 || limite < 1 || limite > LOG_LIMIT_MAX) {
+                    ctx.status(400).result("'from' deve ser >= 0 e 'limit' entre 1 e " + LOG_LIMIT_MAX + ".");
+                    return;
+                }
+                ctx.status(200).json(LogDAO.getPage(from, limite));
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("Os parâmetros 'from' e 'limit' devem ser numéricos.");
+            }
+        });
+
+        app.get("/app/logs/tail", ctx -> {
+            String linesParam = ctx.queryParam("lines");
+            try {
+                int linhas = linesParam != null ? Integer.parseInt(linesParam) : LOG_LIMIT_DEFAULT;
+                if (linhas < 1 || linhas > LOG_LIMIT_MAX) {
+                    ctx.status(400).result("'lines' deve estar entre 1 e " + LOG_LIMIT_MAX + ".");
+                    return;
+                }
+                ctx.status(200).json(LogDAO.getTailPage(linhas));
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("O parâmetro 'lines' deve ser numérico.");
+            }
+        });
 
         app.get("/app/security/public-key", ctx -> {
             ctx.result(RSA.publicKeyToBase64(publicKey));
@@ -104,12 +170,28 @@ public class ApplicationServer {
             ClientEntity credentials = ctx.bodyAsClass(ClientEntity.class);
             ClientEntity client = clientDAO.authenticate(credentials.getUsername(), credentials.getPassword());
             if (client != null) {
+                ctx.header(SESSION_HEADER, clientDAO.openSession(client));
                 ctx.status(200).json(client);
             } else {
                 ctx.status(401).result("Credenciais inválidas");
             }
         });
 
+        // Requisições seguintes usam o token devolvido no login, sem verificar a senha de novo
+        app.get("/app/auth/session", ctx -> {
+            ClientEntity client = clientDAO.getBySession(ctx.header(SESSION_HEADER));
+            if (client != null) {
+                ctx.status(200).json(client);
+            } else {
+                ctx.status(401).result("Sessão inválida ou expirada");
+            }
+        });
+
+        app.post("/app/auth/logout", ctx -> {
+            clientDAO.closeSession(ctx.header(SESSION_HEADER));
+            ctx.status(204);
+        });
+
         app.post("/app/auth/register", ctx -> {
             ClientEntity credentials = ctx.bodyAsClass(ClientEntity.class);
             if (clientDAO.exists(credentials.getUsername())) {
@@ -121,9 +203,37 @@ public class ApplicationServer {
         });
 
         app.get("/app/weather", ctx -> {
-            LogDAO.addLog("[HTTP_REQUEST] Recebida requisição para SELECT ALL.");
-            WeatherData[] allWeatherData = weatherDataDAO.selectAll();
-            ctx.status(200).json(allWeatherData != null ? allWeatherData : new WeatherData[0]);
+            String from = ctx.queryParam("from");
+            String to = ctx.queryParam("to");
+            String limit = ctx.queryParam("limit");
+            String cursor = ctx.queryParam("cursor");
+
+            // Sem parâmetros de paginação mantém o comportamento antigo (tudo de uma vez)
+            if (from == null && to == null && limit == null && cursor == null) {
+                LogDAO.addLog("[HTTP_REQUEST] Recebida requisição para SELECT ALL.");
+                WeatherData[] allWeatherData = weatherDataDAO.selectAll();
+                ctx.status(200).json(allWeatherData != null ? allWeatherData : new WeatherData[0]);
+                return;
+            }
+
+            try {
+                long de = from != null ? Long.parseLong(from) : 0L;
+                long ate = to != null ? Long.parseLong(to) : Long.MAX_VALUE;
+                int limite = limit != null ? Integer.parseInt(limit) : PAGE_LIMIT_DEFAULT;
+
+                if (limite < 1 || limite > PAGE_LIMIT_MAX) {
+                    ctx.status(400).result("O parâmetro 'limit' deve estar entre 1 e " + PAGE_LIMIT_MAX + ".");
+                    return;
+                }
+
+                LogDAO.addLog("[HTTP_REQUEST] Recebida requisição para SELECT PAGE: from=" + de + ", to=" + ate + ", limit=" + limite);
+                WeatherPage page = weatherDataDAO.selectPage(de, ate, limite, cursor);
+                ctx.status(200).json(page);
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("Os parâmetros 'from', 'to' e 'limit' devem ser numéricos (epoch em milissegundos).");
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+            }
         });
 
         app.get("/app/weather/microcontroller/{id}", ctx -> {
@@ -147,6 +257,160 @@ public class ApplicationServer {
             }
         });
 
+        app.get("/app/weather/latest", ctx -> {
+            String idParam = ctx.queryParam("id");
+            String region = ctx.queryParam("region");
+
+            try {
+                WeatherData latest;
+                if (idParam != null) {
+                    if (region == null || region.isBlank()) {
+                        ctx.status(400).result("O parâmetro 'region' é obrigatório quando 'id' é informado.");
+                        return;
+                    }
+                    latest = weatherDataDAO.getUltimo(new MicrocontrollerEntity(Integer.parseInt(idParam), region));
+                } else {
+                    latest = weatherDataDAO.getUltimo();
+                }
+
+                if (latest == null) {
+                    ctx.status(404).result("Nenhum registro climático encontrado.");
+                } else {
+                    ctx.status(200).json(latest);
+                }
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("ID do microcontrolador inválido.");
+            }
+        });
+
+        app.get("/app/weather/aggregates", ctx -> {
+            try {
+                String resolutionParam = ctx.queryParam("resolution");
+                AggregateDAO.Resolution resolution = AggregateDAO.Resolution.parse(resolutionParam != null ? resolutionParam : "hour");
+
+                String idParam = ctx.queryParam("id");
+                String region = ctx.queryParam("region");
+                if (region != null && region.isBlank()) {
+                    region = null;
+                }
+
+                Integer mcId = null;
+                if (idParam != null) {
+                    if (region == null) {
+                        ctx.status(400).result("O parâmetro 'region' é obrigatório quando 'id' é informado.");
+                        return;
+                    }
+                    mcId = Integer.parseInt(idParam);
+                }
+
+                String from = ctx.queryParam("from");
+                String to = ctx.queryParam("to");
+                long de = from != null ? Long.parseLong(from) : 0L;
+                long ate = to != null ? Long.parseLong(to) : Long.MAX_VALUE;
+
+                LogDAO.addLog("[HTTP_REQUEST] Recebida requisição para AGGREGATES: resolution=" + resolution.getNome() + ", id=" + mcId + ", region=" + region);
+                WeatherAggregate[] aggregates = aggregateDAO.select(resolution, mcId, region, de, ate);
+                ctx.status(200).json(aggregates);
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("Os parâmetros 'id', 'from' e 'to' devem ser numéricos.");
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+            }
+        });
+
+        // Resumo de um intervalo arbitrário lido direto das colunas; só cobre a retenção dos dados brutos
+        app.get("/app/weather/summary", ctx -> {
+            try {
+                String idParam = ctx.queryParam("id");
+                String region = ctx.queryParam("region");
+                if (region != null && region.isBlank()) {
+                    region = null;
+                }
+
+                Integer mcId = null;
+                if (idParam != null) {
+                    if (region == null) {
+                        ctx.status(400).result("O parâmetro 'region' é obrigatório quando 'id' é informado.");
+                        return;
+                    }
+                    mcId = Integer.parseInt(idParam);
+                }
+
+                String from = ctx.queryParam("from");
+                String to = ctx.queryParam("to");
+                long de = from != null ? Long.parseLong(from) : 0L;
+                long ate = to != null ? Long.parseLong(to) : Long.MAX_VALUE;
+
+                LogDAO.addLog("[HTTP_REQUEST] Recebida requisição para SUMMARY: id=" + mcId + ", region=" + region);
+                ctx.status(200).json(weatherDataDAO.summarize(de, ate, mcId, region));
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("Os parâmetros 'id', 'from' e 'to' devem ser numéricos.");
+            }
+        });
+
+        Thread startupThread = new Thread(ApplicationServer::loadDatabase, "Database-Startup-Thread");
+        startupThread.start();
+    }
+
+
+    private static boolean disponivelDuranteCarga(String path) {
+        return path.startsWith("/app/security/")
+                || path.equals("/app/logs") || path.equals("/app/logs/tail")
+                || path.equals("/app/metrics/hash");
+    }
+
+
+    /**
+     * Carrega snapshots e reaplica os WALs; só depois libera as rotas, o consumo do RabbitMQ
+     * e o registro no Service Discovery, para que o gateway não receba uma instância vazia.
+     * Se a carga falhar o processo termina, em vez de ficar respondendo 503 para sempre.
+     */
+    private static void loadDatabase() {
+        try {
+            carregarBase();
+        } catch (Throwable e) {
+            System.err.println("Erro fatal ao carregar a base de dados: " + e);
+            e.printStackTrace();
+            LogDAO.addLog("[CRITICAL_ERROR] Falha ao carregar a base de dados: " + e);
+            LogDAO.flush();
+            System.exit(1);
+        }
+    }
+
+
+    private static void carregarBase() {
+        long inicio = System.currentTimeMillis();
+
+        weatherDataDAO = new WeatherDataDAO();
+        WeatherData ultimo = weatherDataDAO.getUltimo();
+        if (ultimo != null && ultimo.getTime() != null) {
+            ultimoTempoIngestao = ultimo.getTime().getTime();
+        }
+        clientDAO = new ClientDAO();
+        aggregateDAO = new AggregateDAO(weatherDataDAO);
+        retentionCompactor = new RetentionCompactor(weatherDataDAO, aggregateDAO);
+
+        // Fecha o segmento atual dos WALs ao desligar
+        Runtime.getRuntime().addShutdownHook(new Thread(weatherDataDAO::close));
+        Runtime.getRuntime().addShutdownHook(new Thread(clientDAO::close));
+
+        retentionCompactor.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(retentionCompactor::shutdown));
+
+        ready = true;
+        System.out.println("Base de dados carregada em " + (System.currentTimeMillis() - inicio) + " ms. Servidor pronto.");
+        LogDAO.addLog("[STARTUP] Base carregada em " + (System.currentTimeMillis() - inicio) + " ms");
+
+        boolean registered = registerService();
+        if (registered) {
+            // Só inicia o heartbeat se o registro inicial foi bem-sucedido
+            serviceRegistrar.startHeartbeat();
+            // Adiciona um gancho de desligamento para parar o heartbeat de forma limpa
+            Runtime.getRuntime().addShutdownHook(new Thread(serviceRegistrar::shutdown));
+        } else {
+            System.err.println("Aplicação iniciando em modo degradado pois não conseguiu se registrar no Service Discovery.");
+        }
+
         Thread rabbitMqThread = new Thread(ApplicationServer::startRabbitMQConsumer, "RabbitMQ-Consumer-Thread");
         rabbitMqThread.setDaemon(true);
         rabbitMqThread.start();
@@ -171,6 +435,16 @@ public class ApplicationServer {
             LogDAO.addLog("[RabbitMQ] Consumer ready and waiting for messages.");
 
             DeliverCallback deliverCallback = (consumerTag, delivery) -> {
+                if (WeatherCodec.CONTENT_TYPE.equals(delivery.getProperties().getContentType())) {
+                    try {
+                        persistData(WeatherCodec.decode(delivery.getBody()));
+                    } catch (IllegalArgumentException e) {
+                        LogDAO.addLog("[RabbitMQ_ERROR] Invalid binary weather message: " + e.getMessage());
+                    }
+                    return;
+                }
+
+                // Formato texto "id|região|..." de estações mais antigas
                 String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
                 LogDAO.addLog("[RabbitMQ] Received raw message: '" + message + "'");
                 try {
@@ -207,14 +481,42 @@ public class ApplicationServer {
             MicrocontrollerEntity microcontroller = new MicrocontrollerEntity(stationId, location);
             WeatherData newData = new WeatherData(microcontroller, pressure, radiation, temperature, humidity);
 
-            weatherDataDAO.addWeatherData(newData);
-            LogDAO.addLog("[DATA_INSERT] Novos dados do RabbitMQ persistidos para a estação ID: " + stationId);
+            persistData(newData);
         } catch (Exception e) {
             System.err.println("Erro no parsing da mensagem: " + e.getMessage());
             LogDAO.addLog("[PARSE_ERROR] Mensagem inválida recebida do RabbitMQ: " + message);
         }
     }
 
+
+    private static synchronized void persistData(WeatherData newData) {
+        if (newData.getMicrocontroller() == null) {
+            LogDAO.addLog("[PARSE_ERROR] Leitura sem microcontrolador descartada");
+            return;
+        }
+        newData.setTime(new Date(tempoDeIngestao(newData.getTime())));
+
+        weatherDataDAO.addWeatherData(newData);
+        aggregateDAO.addWeatherData(newData);
+        LogDAO.addLog("[DATA_INSERT] Novos dados do RabbitMQ persistidos para a estação ID: " + newData.getMicrocontroller().getId());
+    }
+
+    /**
+     * Leituras binárias trazem o horário em que chegaram à estação, que se mantém quando ficam no spill
+     * durante uma queda do broker. Colunas e índices de tempo dependem de tempos em ordem de inserção e
+     * os relógios das estações não são sincronizados, então o horário é limitado a
+     * [agora - INGEST_MAX_DELAY_MINUTES, agora] e nunca fica antes do último persistido.
+     * Uma leitura sem horário (formato texto) fica com o de chegada.
+     */
+    private static long tempoDeIngestao(Date informado) {
+        long agora = System.currentTimeMillis();
+        long tempo = informado != null ? informado.getTime() : agora;
+        tempo = Math.max(Math.min(tempo, agora), agora - ATRASO_MAXIMO_INGESTAO_MS);
+        tempo = Math.max(tempo, ultimoTempoIngestao);
+        ultimoTempoIngestao = tempo;
+        return tempo;
+    }
+
     /**
      * Registra esta instância do serviço no Service Discovery.
      */
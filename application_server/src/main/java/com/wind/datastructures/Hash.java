@@ -1,287 +1,556 @@
 package com.wind.datastructures;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.wind.model.DAO.LogDAO;
 
+/**
+ * Tabela hash de chaves int com endereçamento aberto.
+ * Chaves e valores ficam em dois arrays paralelos (sem um Node por entrada), a capacidade é sempre
+ * potência de dois, a chave passa por uma função de mistura antes do índice e as colisões são
+ * resolvidas por sondagem linear.
+ * Uma posição está livre quando o seu valor é null; por isso valores null não são aceitos.
+ *
+ * A remoção deixa uma lápide na posição: a sondagem passa por ela e uma inserção pode reaproveitá-la,
+ * então remover não mexe em nenhuma outra entrada. Quando as lápides passam de
+ * {@code FRACAO_MAXIMA_LAPIDES} da capacidade, a tabela é refeita do mesmo tamanho para descartá-las.
+ *
+ * Escritas são serializadas por um {@link StampedLock}; buscas usam leitura otimista e só
+ * pegam o lock de leitura se uma escrita aconteceu no meio, então não esperam umas pelas outras.
+ *
+ * O redimensionamento é incremental: a tabela nova entra em uso na hora e cada escrita seguinte
+ * migra {@code POSICOES_POR_MIGRACAO} posições da antiga, então nenhuma operação paga o rehash inteiro.
+ * Uma thread compartilhada termina a migração em segundo plano, para que ela não fique parada
+ * quando as escritas param (por exemplo, depois de uma expiração em massa). Um redimensionamento
+ * pedido no meio de uma migração espera ela terminar e começa em seguida, também incremental.
+ * Enquanto houver migração, buscas olham a tabela nova e depois a antiga.
+ *
+ * A iteração ({@link #spliterator()}, {@link #stream()}, {@link #parallelStream()}) não usa lock nem copia
+ * a tabela: é fracamente consistente, como a de um ConcurrentHashMap. Cada entrada presente na criação e
+ * não removida depois aparece exatamente uma vez, mesmo que uma migração a mova no meio do caminho;
+ * escritas posteriores podem ou não aparecer.
+ */
 public class Hash<T> implements Serializable, Iterable<T> {
-    @SuppressWarnings("hiding")
-    private class Node<T> implements Serializable {
-        int chave;
-        T valor;
+    private static final long serialVersionUID = 1L;
+
+    private static final float FATOR_CARGA = 0.75f;
+    private static final int CAPACIDADE_MINIMA = 16;
+    private static final int POSICOES_POR_MIGRACAO = 256;
+    private static final int MIGRACOES_POR_RODADA = 16; // passos da thread de migração a cada lock
+    private static final float FRACAO_MAXIMA_LAPIDES = 0.25f;
+
+    /**
+     * Marca deixada numa posição vazia por remoção ({@link #LAPIDE}) ou por migração para a
+     * tabela nova ({@link #MOVIDO}). A sondagem continua por ela; a chave fica na posição,
+     * o que permite à iteração saber de onde veio uma entrada migrada.
+     */
+    private static final class Marca implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final boolean movido;
+
+        private Marca(boolean movido) {
+            this.movido = movido;
+        }
 
-        public Node(int chave, T valor) {
-            this.chave = chave;
-            this.valor = valor;
+        private Object readResolve() {
+            return movido ? MOVIDO : LAPIDE;
         }
     }
 
-    private Node<T>[] tabela;
-    private int tamanho;
-    private int ocupacao;
-    private final Lock lock = new ReentrantLock(); // Lock for thread safety
+    private static final Object LAPIDE = new Marca(false);
+    private static final Object MOVIDO = new Marca(true);
+
+    private static final int POSICOES_MINIMAS_POR_DIVISAO = 1024;
+
+    private static final ExecutorService MIGRADOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Hash-Migration-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Arrays da tabela publicados juntos, para que um leitor nunca combine
+     * chaves de uma capacidade com valores de outra.
+     */
+    private static final class Tabela implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final int[] chaves;
+        final Object[] valores;
+        final int mascara;
+        final int limite; // ocupação (entradas + lápides) que dispara o redimensionamento
+        int lapides;
+
+        Tabela(int capacidade) {
+            chaves = new int[capacidade];
+            valores = new Object[capacidade];
+            mascara = capacidade - 1;
+            limite = (int) (capacidade * FATOR_CARGA);
+        }
 
-    @SuppressWarnings("unchecked")
-    public Hash(int tamanho) {
-        if (tamanho < 1) {
-            throw new IllegalArgumentException("Tamanho inválido");
+        int hash(int chave) {
+            return misturar(chave) & mascara;
         }
-        this.tamanho = proximoPrimo(tamanho);
-        tabela = new Node[this.tamanho];
-        ocupacao = 0;
-    }
 
-    private int proximoPrimo(int n) {
-        while (!isPrimo(n)) {
-            n++;
+        /**
+         * @return A posição da chave, ou -1 se ela não está na tabela.
+         * A volta é limitada à capacidade para que uma leitura otimista concorrente com
+         * uma escrita termine mesmo vendo a tabela num estado intermediário.
+         */
+        int posicao(int chave) {
+            int posicao = hash(chave);
+            for (int passos = 0; passos <= mascara && valores[posicao] != null; passos++) {
+                if (chaves[posicao] == chave && vivo(valores[posicao])) {
+                    return posicao;
+                }
+                posicao = (posicao + 1) & mascara;
+            }
+            return -1;
         }
 
-        return n;
+        /**
+         * Coloca uma chave que sabidamente não está na tabela, reaproveitando a primeira lápide do caminho.
+         * @return Quantas posições além da ideal foram percorridas.
+         */
+        int colocar(int chave, Object valor) {
+            int posicao = hash(chave);
+            int distancia = 0;
+            while (valores[posicao] != null && valores[posicao] != LAPIDE) {
+                posicao = (posicao + 1) & mascara;
+                distancia++;
+            }
+            if (valores[posicao] == LAPIDE) {
+                lapides--;
+            }
+            chaves[posicao] = chave;
+            valores[posicao] = valor;
+            return distancia;
+        }
     }
 
-    private boolean isPrimo(int n) {
-        // Só precisa verificar até a raiz quadrada de n
-        for (int i = 2; i < Math.sqrt(n); i++) {
-            if (n % i == 0) {
-                return false;
-            }
+    private volatile Tabela tabela;
+    private volatile Tabela antiga; // tabela sendo migrada, ou null
+    private int cursorMigracao; // posições da antiga abaixo dele já foram migradas
+    private int redimensionamentoPendente; // tamanho pedido durante uma migração, ou 0
+    private volatile int ocupacao;
+    private final StampedLock lock = new StampedLock();
+    private transient HashMetrics metricas = new HashMetrics(this);
+
+    // Entrada de maior chave, mantida nas escritas para que getUltimo não percorra a tabela
+    private Object ultimo;
+    private int chaveUltimo;
+    private boolean ultimoValido = true; // false depois que a maior chave é removida; recalculado sob demanda
+
+    public Hash(int tamanho) {
+        if (tamanho < 1) {
+            throw new IllegalArgumentException("Tamanho inválido");
         }
+        tabela = new Tabela(capacidadePara(tamanho));
+        ocupacao = 0;
+    }
 
-        return true;
+    /**
+     * Tabela cujas métricas ficam registradas com {@code nome} em {@link HashMetrics#snapshotAll()}.
+     */
+    public Hash(String nome, int tamanho) {
+        this(tamanho);
+        HashMetrics.registrar(nome, metricas);
     }
 
-    private int hash(int chave) {
-        return chave % this.tamanho;
+    private static boolean vivo(Object valor) {
+        return valor != null && !(valor instanceof Marca);
     }
 
-    private int hashColisao(int chave, int i) {
-        // Função de hash para tratamento de colisões por endereçamento aberto
-        // A função somada garante a varredura de toda a tabela
-        return (hash(chave) + (i + chave)) % this.tamanho;
+    private static int capacidadePara(int entradas) {
+        long necessario = Math.max(CAPACIDADE_MINIMA, (long) Math.ceil(entradas / (double) FATOR_CARGA));
+        if (necessario > (1 << 30)) {
+            return 1 << 30;
+        }
+        return Integer.highestOneBit((int) necessario - 1) << 1;
     }
 
-    private int hashColisao(int chave, int i, int novoTamanho) {
-        return (hash(chave) + (i + chave)) % novoTamanho;
+    /**
+     * Mistura os bits da chave (finalizador do MurmurHash3) para que ids sequenciais
+     * não formem sequências longas de posições vizinhas ocupadas.
+     */
+    private static int misturar(int chave) {
+        int h = chave;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
     }
 
     public void inserir(int chave, T valor) {
-        lock.lock();
+        if (valor == null) {
+            throw new IllegalArgumentException("Valor nulo não é permitido");
+        }
+
+        long inicio = metricas.inicio();
+        long stamp = lock.writeLock();
         try {
-            int posicao = hash(chave);
+            migrarPasso();
+
+            Tabela atual = tabela;
+            int posicao = atual.posicao(chave);
+            // Se já existe a chave, atualiza o valor
+            if (posicao >= 0) {
+                metricas.atualizacoes.increment();
+                atual.valores[posicao] = valor;
+                registrarUltimo(chave, valor);
+                return;
+            }
 
-            if (tabela[posicao] == null) {
-                tabela[posicao] = new Node<>(chave, valor);
-                ocupacao++;
+            // Chave ainda não migrada: sai da tabela antiga e entra na nova já com o valor novo
+            Tabela emMigracao = antiga;
+            int posicaoAntiga = emMigracao != null ? emMigracao.posicao(chave) : -1;
+            int distancia = atual.colocar(chave, valor);
+            if (posicaoAntiga >= 0) {
+                metricas.atualizacoes.increment();
+                emMigracao.valores[posicaoAntiga] = MOVIDO;
             } else {
-                // Se já existe a chave na posição inicial, atualiza o valor
-                if (tabela[posicao].chave == chave) {
-                    LogDAO.addLog("[HASH UPDATE] Chave " + chave + " atualizada");
-
-                    tabela[posicao].valor = valor;
-                    return;
-                }
-
-                int i = 1;
-                while (tabela[hashColisao(chave, i)] != null) {
-                    // Se já existe a chave, atualiza o valor
-                    if (tabela[hashColisao(chave, i)].chave == chave) {
-                        LogDAO.addLog("[HASH UPDATE] Atualizando valor da chave " + chave);
-
-                        tabela[hashColisao(chave, i)].valor = valor;
-                        return;
-                    }
-                    i++;
-                }
-
-                LogDAO.addLog("[HASH COLLISION] Colisão na posição " + posicao + " com chave " + chave);
-
-                tabela[hashColisao(chave, i)] = new Node<>(chave, valor);
+                metricas.registrarInsercao(distancia, inicio);
                 ocupacao++;
             }
+            registrarUltimo(chave, valor);
 
-            if (ocupacao >= tamanho) {
-                redimensionar(tamanho * 2);
+            if (ocupacao + atual.lapides > atual.limite) {
+                // Se são as lápides que enchem a tabela, basta refazê-la do mesmo tamanho
+                boolean cheia = ocupacao > atual.limite / 2;
+                redimensionarComLock(cheia ? atual.chaves.length * 2 : atual.chaves.length);
             }
         } finally {
-            lock.unlock();
+            lock.unlockWrite(stamp);
+            HashMetrics.registrarLatencia(metricas.latenciaInsercao, inicio);
         }
     }
 
     public T buscar(int chave) {
-        lock.lock();
-        try {
-            int posicao = hash(chave);
-
-            if (tabela[posicao] != null && tabela[posicao].chave == chave) {
-                return tabela[posicao].valor;
-            } else {
-                int i = 1;
-                while (tabela[hashColisao(chave, i)] != null && tabela[hashColisao(chave, i)].chave != chave) {
-                    i++;
-                }
+        long inicio = metricas.inicio();
+        T valor = buscarComLock(chave);
+        metricas.registrarBusca(valor != null, inicio);
+        return valor;
+    }
 
-                if (tabela[hashColisao(chave, i)] != null) {
-                    return tabela[hashColisao(chave, i)].valor;
-                }
+    @SuppressWarnings("unchecked")
+    private T buscarComLock(int chave) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Object valor = procurar(chave);
+            if (lock.validate(stamp)) {
+                return (T) valor;
             }
+        }
 
-            return null;
+        // Uma escrita aconteceu durante a leitura otimista: repete com o lock de leitura
+        stamp = lock.readLock();
+        try {
+            return (T) procurar(chave);
         } finally {
-            lock.unlock();
+            lock.unlockRead(stamp);
         }
     }
 
+    private Object procurar(int chave) {
+        Tabela atual = tabela;
+        int posicao = atual.posicao(chave);
+        if (posicao >= 0) {
+            return atual.valores[posicao];
+        }
+
+        Tabela emMigracao = antiga;
+        if (emMigracao != null) {
+            posicao = emMigracao.posicao(chave);
+            if (posicao >= 0) {
+                return emMigracao.valores[posicao];
+            }
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
     public T remover(int chave) throws Exception {
-        lock.lock();
+        long inicio = metricas.inicio();
+        long stamp = lock.writeLock();
         try {
-            int posicao = hash(chave);
-
-            if (tabela[posicao] != null && tabela[posicao].chave == chave) {
-                // copy to return
-                T value = tabela[posicao].valor;
-                tabela[posicao] = null;
+            migrarPasso();
+
+            Tabela atual = tabela;
+            int posicao = atual.posicao(chave);
+            if (posicao >= 0) {
+                T value = (T) atual.valores[posicao];
+                metricas.remocoes.increment();
+                atual.valores[posicao] = LAPIDE;
+                atual.lapides++;
                 ocupacao--;
-                return value;
-            } else {
-                int i = 1;
-                while (tabela[hashColisao(chave, i)] != null && tabela[hashColisao(chave, i)].chave != chave) {
-                    i++;
-                }
+                descartarUltimo(chave);
 
-                if (tabela[hashColisao(chave, i)] != null) {
-                    T value = tabela[hashColisao(chave, i)].valor;
-                    tabela[hashColisao(chave, i)] = null;
-                    ocupacao--;
-                    return value;
+                if (atual.lapides > atual.chaves.length * FRACAO_MAXIMA_LAPIDES && antiga == null) {
+                    redimensionarComLock(atual.chaves.length);
                 }
+                return value;
+            }
+
+            Tabela emMigracao = antiga;
+            posicao = emMigracao != null ? emMigracao.posicao(chave) : -1;
+            if (posicao >= 0) {
+                T value = (T) emMigracao.valores[posicao];
+                metricas.remocoes.increment();
+                emMigracao.valores[posicao] = LAPIDE;
+                ocupacao--;
+                descartarUltimo(chave);
+                return value;
             }
 
             // Quem sobrar é exception
             throw new Exception("Chave não encontrada");
         } finally {
-            lock.unlock();
+            lock.unlockWrite(stamp);
+            HashMetrics.registrarLatencia(metricas.latenciaRemocao, inicio);
         }
     }
 
     public void redimensionar(int novoTamanho) {
-        lock.lock();
+        long stamp = lock.writeLock();
         try {
-            novoTamanho = proximoPrimo(novoTamanho);
+            redimensionarComLock(novoTamanho);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            LogDAO.addLog("[HASH RESIZE] Redimensionando tabela de " + tamanho + " para " + novoTamanho);
+    /**
+     * Troca a tabela por uma nova de capacidade adequada e deixa a antiga para ser migrada aos poucos.
+     * Com a mesma capacidade, serve para descartar as lápides.
+     * Se ainda houver uma migração em andamento, o pedido fica pendente e é atendido quando ela terminar.
+     */
+    private void redimensionarComLock(int novoTamanho) {
+        if (antiga != null) {
+            // Não drena a migração aqui com o lock de escrita: a tabela nova ainda tem a folga do fator de
+            // carga e cada escrita migra POSICOES_POR_MIGRACAO posições, então ela termina antes de encher
+            redimensionamentoPendente = Math.max(redimensionamentoPendente, novoTamanho);
+            return;
+        }
 
-            @SuppressWarnings("unchecked")
-            Node<T>[] novaTabela = new Node[novoTamanho];
+        Tabela velha = tabela;
+        int novaCapacidade = Math.max(capacidadePara(ocupacao + 1), capacidadePara((int) (novoTamanho * FATOR_CARGA)));
+        if (novaCapacidade == velha.chaves.length && velha.lapides == 0) {
+            return;
+        }
 
-            for (int i = 0; i < tamanho; i++) {
-                if (tabela[i] != null) {
-                    int chave = tabela[i].chave;
-                    int posicao = chave % novoTamanho;
+        if (novaCapacidade == velha.chaves.length) {
+            metricas.compactacoes.increment();
+            LogDAO.addLog("[HASH COMPACT] Descartando " + velha.lapides + " lápides de uma tabela de " + novaCapacidade);
+        } else {
+            metricas.redimensionamentos.increment();
+            LogDAO.addLog("[HASH RESIZE] Redimensionando tabela de " + velha.chaves.length + " para " + novaCapacidade);
+        }
 
-                    if (novaTabela[posicao] == null) {
-                        novaTabela[posicao] = tabela[i];
-                    } else {
-                        int j = 1;
-                        while (novaTabela[hashColisao(chave, j)] != null) {
-                            j++;
-                        }
+        cursorMigracao = 0;
+        antiga = velha;
+        tabela = new Tabela(novaCapacidade);
+        MIGRADOR.execute(this::migrarEmSegundoPlano);
+    }
 
-                        novaTabela[hashColisao(chave, j, novoTamanho)] = tabela[i];
-                    }
+    /**
+     * Roda na thread de migração: avança a migração em rodadas curtas, soltando o lock
+     * entre elas para não segurar as escritas.
+     */
+    private void migrarEmSegundoPlano() {
+        while (true) {
+            long stamp = lock.writeLock();
+            try {
+                for (int i = 0; i < MIGRACOES_POR_RODADA && antiga != null; i++) {
+                    migrarPasso();
+                }
+                if (antiga == null) {
+                    return;
                 }
+            } finally {
+                lock.unlockWrite(stamp);
             }
+            Thread.yield();
+        }
+    }
 
-            tabela = novaTabela;
-            tamanho = novoTamanho;
-        } finally {
-            lock.unlock();
+    /**
+     * Migra as próximas posições da tabela antiga; chamado com o lock de escrita.
+     */
+    private void migrarPasso() {
+        Tabela emMigracao = antiga;
+        if (emMigracao == null) {
+            return;
+        }
+
+        Tabela atual = tabela;
+        int fim = Math.min(emMigracao.valores.length, cursorMigracao + POSICOES_POR_MIGRACAO);
+        for (int i = cursorMigracao; i < fim; i++) {
+            Object valor = emMigracao.valores[i];
+            if (vivo(valor)) {
+                // Copia antes de marcar: um leitor sempre acha a entrada numa das duas tabelas
+                atual.colocar(emMigracao.chaves[i], valor);
+                emMigracao.valores[i] = MOVIDO;
+            }
+        }
+
+        cursorMigracao = fim;
+        if (fim == emMigracao.valores.length) {
+            antiga = null;
+
+            int pendente = redimensionamentoPendente;
+            if (pendente > 0) {
+                redimensionamentoPendente = 0;
+                redimensionarComLock(pendente);
+            }
         }
     }
 
-    public int getOcupacao() {
-        lock.lock();
-        try {
-            return ocupacao;
-        } finally {
-            lock.unlock();
+    private void concluirMigracao() {
+        while (antiga != null) {
+            migrarPasso();
         }
     }
 
-    public int getTamanho() {
-        lock.lock();
+    // A cópia gravada não fica dependendo da thread de migração para terminar
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        long stamp = lock.writeLock();
         try {
-            return tamanho;
+            concluirMigracao();
+            out.defaultWriteObject();
         } finally {
-            lock.unlock();
+            lock.unlockWrite(stamp);
         }
     }
 
-    public boolean isEmpty() {
-        lock.lock();
-        try {
-            return ocupacao == 0;
-        } finally {
-            lock.unlock();
+    private void registrarUltimo(int chave, Object valor) {
+        if (ultimoValido && (ultimo == null || chave >= chaveUltimo)) {
+            ultimo = valor;
+            chaveUltimo = chave;
         }
     }
 
-    public T getUltimo() {
-        lock.lock();
-        try {
-            Node<T> maior = tabela[0];
+    private void descartarUltimo(int chave) {
+        if (ultimo != null && chave == chaveUltimo) {
+            ultimo = null;
+            ultimoValido = ocupacao == 0;
+        }
+    }
 
-            for (int i = 1; i < tamanho; i++) {
-                if (maior == null) {
-                    maior = tabela[i];
-                } else if (tabela[i] != null && tabela[i].chave > maior.chave) {
-                    maior = tabela[i];
-                }
-            }
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        metricas = new HashMetrics(this);
+    }
 
-            if (maior == null) {
-                return null;
+    public HashMetrics getMetrics() {
+        return metricas;
+    }
+
+    int getLapides() {
+        return tabela.lapides;
+    }
+
+    boolean isMigrando() {
+        return antiga != null;
+    }
+
+    public int getOcupacao() {
+        return ocupacao;
+    }
+
+    public int getTamanho() {
+        return tabela.chaves.length;
+    }
+
+    public boolean isEmpty() {
+        return ocupacao == 0;
+    }
+
+    /**
+     * @return O valor de maior chave, ou null se a tabela está vazia. Custa O(1), exceto na primeira
+     * chamada depois que a maior chave foi removida, que percorre a tabela uma vez.
+     */
+    @SuppressWarnings("unchecked")
+    public T getUltimo() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Object valor = ultimo;
+            boolean valido = ultimoValido;
+            if (lock.validate(stamp) && valido) {
+                return (T) valor;
             }
+        }
 
-            return maior.valor;
+        stamp = lock.writeLock();
+        try {
+            if (!ultimoValido) {
+                recalcularUltimo();
+            }
+            return (T) ultimo;
         } finally {
-            lock.unlock();
+            lock.unlockWrite(stamp);
         }
     }
 
-    public List<T> getAll() {
-        lock.lock();
-        try {
-            List<T> list = new ArrayList<>();
-            for (int i = 0; i < tamanho; i++) {
-                if (tabela[i] != null) {
-                    list.add(tabela[i].valor);
+    private void recalcularUltimo() {
+        ultimo = null;
+
+        for (Tabela atual : new Tabela[] { tabela, antiga }) {
+            if (atual == null) {
+                continue;
+            }
+            for (int i = 0; i < atual.valores.length; i++) {
+                Object valor = atual.valores[i];
+                if (vivo(valor) && (ultimo == null || atual.chaves[i] > chaveUltimo)) {
+                    ultimo = valor;
+                    chaveUltimo = atual.chaves[i];
                 }
             }
-            return list;
-        } finally {
-            lock.unlock();
         }
+
+        ultimoValido = true;
+    }
+
+    /**
+     * Copia os valores para uma lista, sem lock; mesma consistência da iteração.
+     */
+    public List<T> getAll() {
+        List<T> list = new ArrayList<>(ocupacao);
+        spliterator().forEachRemaining(list::add);
+        return list;
     }
 
     public String toString() {
-        lock.lock();
+        long stamp = lock.writeLock();
         try {
+            concluirMigracao();
+            Tabela atual = tabela;
             StringBuilder sb = new StringBuilder();
             sb.append("[");
 
-            for (int i = 0; i < tamanho; i++) {
-                if (tabela[i] != null) {
-                    sb.append(tabela[i].chave);
+            for (int i = 0; i < atual.valores.length; i++) {
+                if (vivo(atual.valores[i])) {
+                    sb.append(atual.chaves[i]);
                 } else {
                     sb.append("null");
                 }
 
-                if (i < tamanho - 1) {
+                if (i < atual.valores.length - 1) {
                     sb.append(", ");
                 }
             }
@@ -289,37 +558,148 @@ public class Hash<T> implements Serializable, Iterable<T> {
             sb.append("]");
             return sb.toString();
         } finally {
-            lock.unlock();
+            lock.unlockWrite(stamp);
         }
     }
 
     @Override
     public Iterator<T> iterator() {
-        return new Iterator<T>() {
-            private int i = 0;
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Divide as posições das tabelas vigentes na criação; ver a consistência na descrição da classe.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        long stamp = lock.readLock();
+        try {
+            Tabela emMigracao = antiga;
+            int inicioAntiga = emMigracao != null ? cursorMigracao : 0;
+            int posicoes = tabela.valores.length + (emMigracao != null ? emMigracao.valores.length - inicioAntiga : 0);
+            return new Divisor(tabela, emMigracao, inicioAntiga, 0, posicoes);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Percorre um intervalo de posições: primeiro as da tabela antiga ainda não migradas na criação
+     * ({@code inicioAntiga} em diante), depois as da tabela atual.
+     *
+     * Uma posição da antiga responde pela sua entrada até o fim: se ela foi movida depois da criação, o
+     * valor é buscado onde estiver, e a cópia dela na tabela atual é pulada. Uma posição marcada como
+     * movida na tabela atual (por um redimensionamento posterior) também busca o valor onde estiver.
+     */
+    private final class Divisor implements Spliterator<T> {
+        private final Tabela atual;
+        private final Tabela emMigracao;
+        private final int inicioAntiga;
+        private final int posicoesAntiga;
+        private int indice;
+        private final int fim;
+
+        Divisor(Tabela atual, Tabela emMigracao, int inicioAntiga, int indice, int fim) {
+            this.atual = atual;
+            this.emMigracao = emMigracao;
+            this.inicioAntiga = inicioAntiga;
+            this.posicoesAntiga = emMigracao != null ? emMigracao.valores.length - inicioAntiga : 0;
+            this.indice = indice;
+            this.fim = fim;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> acao) {
+            while (indice < fim) {
+                Object valor = elemento(indice++);
+                if (valor != null) {
+                    acao.accept((T) valor);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (fim - indice < 2 * POSICOES_MINIMAS_POR_DIVISAO) {
+                return null;
+            }
+
+            int meio = (indice + fim) >>> 1;
+            Divisor prefixo = new Divisor(atual, emMigracao, inicioAntiga, indice, meio);
+            indice = meio;
+            return prefixo;
+        }
 
-            @Override
-            public boolean hasNext() {
-                return i < ocupacao;
+        @Override
+        public long estimateSize() {
+            int posicoes = atual.valores.length + posicoesAntiga;
+            return (long) (fim - indice) * ocupacao / Math.max(1, posicoes);
+        }
+
+        @Override
+        public int characteristics() {
+            return CONCURRENT | NONNULL;
+        }
+
+        private Object elemento(int i) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object valor = ler(i);
+                if (lock.validate(stamp)) {
+                    return valor;
+                }
             }
 
-            @Override
-            public T next() {
-                lock.lock();
-                try {
-                    while (tabela[i] == null && i < tamanho) {
-                        i++;
-                    }
-
-                    if (i >= tamanho) {
-                        return null;
-                    }
-
-                    return tabela[i++].valor;
-                } finally {
-                    lock.unlock();
+            stamp = lock.readLock();
+            try {
+                return ler(i);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private Object ler(int i) {
+            if (i < posicoesAntiga) {
+                int posicao = inicioAntiga + i;
+                Object valor = emMigracao.valores[posicao];
+                return valor == MOVIDO ? procurar(emMigracao.chaves[posicao]) : (vivo(valor) ? valor : null);
+            }
+
+            int posicao = i - posicoesAntiga;
+            Object valor = atual.valores[posicao];
+            if (valor == null || valor == LAPIDE || veioDaAntiga(atual.chaves[posicao])) {
+                return null;
+            }
+            return valor == MOVIDO ? procurar(atual.chaves[posicao]) : valor;
+        }
+
+        /**
+         * Diz se a chave foi movida de uma posição da antiga que este percurso já cobre.
+         */
+        private boolean veioDaAntiga(int chave) {
+            if (emMigracao == null) {
+                return false;
+            }
+
+            int posicao = emMigracao.hash(chave);
+            for (int passos = 0; passos <= emMigracao.mascara && emMigracao.valores[posicao] != null; passos++) {
+                if (emMigracao.chaves[posicao] == chave && emMigracao.valores[posicao] == MOVIDO) {
+                    return posicao >= inicioAntiga;
                 }
+                posicao = (posicao + 1) & emMigracao.mascara;
             }
-        };
+            return false;
+        }
     }
-}
\ No newline at end of file
+}
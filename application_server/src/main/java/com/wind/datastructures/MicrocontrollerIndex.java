@@ -0,0 +1,42 @@
+package com.wind.datastructures;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.wind.entities.MicrocontrollerEntity;
+
+/**
+ * Índice secundário (id do microcontrolador, região) -> postings ordenados no tempo.
+ * Mantido a cada inserção, então uma consulta por dispositivo custa o tamanho do seu resultado.
+ */
+public class MicrocontrollerIndex {
+    private final Map<String, TimePostings> postings = new ConcurrentHashMap<>();
+
+    public void add(MicrocontrollerEntity microcontroller, int id, long tempo) {
+        postings.computeIfAbsent(chave(microcontroller), k -> new TimePostings()).append(id, tempo);
+    }
+
+    /**
+     * @return Os postings do dispositivo, ou null se ele nunca enviou dados.
+     */
+    public TimePostings get(MicrocontrollerEntity microcontroller) {
+        return postings.get(chave(microcontroller));
+    }
+
+    /**
+     * Descarta, em todos os dispositivos, os postings com tempo menor que {@code tempo}.
+     */
+    public void removeBefore(long tempo) {
+        for (TimePostings lista : postings.values()) {
+            lista.removeBefore(tempo);
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+    }
+
+    private static String chave(MicrocontrollerEntity microcontroller) {
+        return microcontroller.getId() + "|" + microcontroller.getRegion();
+    }
+}
@@ -0,0 +1,105 @@
+package com.wind.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Lista de postings (id, tempo) ordenada pelo tempo de chegada.
+ * Um único escritor acrescenta no fim; leitores trabalham sobre um {@link Snapshot},
+ * que sempre enxerga um trecho consistente, mesmo durante um crescimento ou uma poda do início.
+ */
+public class TimePostings {
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    public static class Snapshot {
+        private final int[] ids;
+        private final long[] tempos;
+        private volatile int tamanho;
+
+        private Snapshot(int[] ids, long[] tempos, int tamanho) {
+            this.ids = ids;
+            this.tempos = tempos;
+            this.tamanho = tamanho;
+        }
+
+        public int size() {
+            return tamanho;
+        }
+
+        public int getId(int i) {
+            return ids[i];
+        }
+
+        public long getTime(int i) {
+            return tempos[i];
+        }
+
+        /**
+         * Primeira posição cujo tempo é maior ou igual a {@code tempo}.
+         */
+        public int lowerBound(long tempo) {
+            int inicio = 0;
+            int fim = tamanho;
+
+            while (inicio < fim) {
+                int meio = (inicio + fim) >>> 1;
+                if (tempos[meio] < tempo) {
+                    inicio = meio + 1;
+                } else {
+                    fim = meio;
+                }
+            }
+
+            return inicio;
+        }
+    }
+
+    private volatile Snapshot estado = new Snapshot(new int[CAPACIDADE_INICIAL], new long[CAPACIDADE_INICIAL], 0);
+
+    public synchronized void append(int id, long tempo) {
+        Snapshot atual = estado;
+        int n = atual.tamanho;
+
+        if (n == atual.ids.length) {
+            atual = new Snapshot(Arrays.copyOf(atual.ids, n * 2), Arrays.copyOf(atual.tempos, n * 2), n);
+        }
+
+        atual.tempos[n] = tempo;
+        atual.ids[n] = id;
+        atual.tamanho = n + 1;
+        estado = atual;
+    }
+
+    /**
+     * Descarta os postings com tempo menor que {@code tempo}.
+     * @return Quantos postings foram descartados.
+     */
+    public synchronized int removeBefore(long tempo) {
+        Snapshot atual = estado;
+        int corte = atual.lowerBound(tempo);
+        if (corte == 0) {
+            return 0;
+        }
+
+        int restantes = atual.tamanho - corte;
+        int capacidade = Math.max(CAPACIDADE_INICIAL, Integer.highestOneBit(Math.max(1, restantes)) * 2);
+        int[] ids = new int[capacidade];
+        long[] tempos = new long[capacidade];
+        System.arraycopy(atual.ids, corte, ids, 0, restantes);
+        System.arraycopy(atual.tempos, corte, tempos, 0, restantes);
+
+        estado = new Snapshot(ids, tempos, restantes);
+        return corte;
+    }
+
+    public synchronized void clear() {
+        estado = new Snapshot(new int[CAPACIDADE_INICIAL], new long[CAPACIDADE_INICIAL], 0);
+    }
+
+    public Snapshot snapshot() {
+        return estado;
+    }
+
+    public int size() {
+        return estado.tamanho;
+    }
+}
@@ -0,0 +1,69 @@
+package com.wind.datastructures.legacy;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Forma serializada da Hash antiga (array de Node com tamanho primo), mantida apenas para ler
+ * arquivos gravados antes da tabela de endereçamento aberto. O nome simples precisa continuar
+ * "Hash" e os serialVersionUID precisam ser os da classe original, senão o ObjectInputStream recusa o stream.
+ */
+public class Hash<T> implements Serializable {
+    private static final long serialVersionUID = 8314179440979881511L;
+
+    @SuppressWarnings("hiding")
+    private class Node<T> implements Serializable {
+        private static final long serialVersionUID = -1650816376958065721L;
+
+        int chave;
+        T valor;
+    }
+
+    private Node<T>[] tabela;
+    private int tamanho;
+    private int ocupacao;
+    private Lock lock;
+
+    private Hash() {
+    }
+
+    public List<T> getAll() {
+        List<T> list = new ArrayList<>(ocupacao);
+        for (int i = 0; i < tamanho; i++) {
+            if (tabela[i] != null) {
+                list.add(tabela[i].valor);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * ObjectInputStream que desvia com.wind.datastructures.Hash (e o seu Node) para esta classe.
+     */
+    public static class InputStream extends ObjectInputStream {
+        private static final String HASH_ANTIGA = "com.wind.datastructures.Hash";
+
+        public InputStream(java.io.InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (desc.getName().equals(HASH_ANTIGA)) {
+                return Hash.class;
+            }
+            if (desc.getName().equals(HASH_ANTIGA + "$Node")) {
+                return Hash.Node.class;
+            }
+            if (desc.getName().equals("[L" + HASH_ANTIGA + "$Node;")) {
+                return Hash.Node[].class;
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.wind.model.DAO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.wind.entities.MicrocontrollerEntity;
+import com.wind.entities.WeatherAggregate;
+import com.wind.entities.WeatherData;
+import com.wind.model.storage.SnapshotFile;
+import com.wind.model.storage.WeatherColumnStore;
+import com.wind.security.AES;
+import com.wind.security.KeyStoreManager;
+
+/**
+ * Rollups (contagem, mínimo, máximo e soma) mantidos incrementalmente a cada leitura consumida,
+ * por microcontrolador, por região e no total, nas resoluções de minuto, hora e dia.
+ * Consultas estatísticas são respondidas daqui sem tocar nos registros brutos.
+ */
+public class AggregateDAO {
+
+    public enum Resolution {
+        MINUTE("minute", 60_000L),
+        HOUR("hour", 3_600_000L),
+        DAY("day", 86_400_000L);
+
+        private final String nome;
+        private final long millis;
+
+        Resolution(String nome, long millis) {
+            this.nome = nome;
+            this.millis = millis;
+        }
+
+        public String getNome() { return nome; }
+        public long getMillis() { return millis; }
+
+        public long bucket(long tempo) {
+            return Math.floorDiv(tempo, millis) * millis;
+        }
+
+        /**
+         * @throws IllegalArgumentException Se a resolução não existir.
+         */
+        public static Resolution parse(String nome) {
+            for (Resolution resolution : values()) {
+                if (resolution.nome.equalsIgnoreCase(nome)) {
+                    return resolution;
+                }
+            }
+            throw new IllegalArgumentException("Resolução inválida: " + nome + ". Use minute, hour ou day.");
+        }
+    }
+
+    private static class Rollup {
+        long count;
+        final float[] min = new float[WeatherColumnStore.METRICAS];
+        final float[] max = new float[WeatherColumnStore.METRICAS];
+        final double[] sum = new double[WeatherColumnStore.METRICAS];
+
+        Rollup() {
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        }
+
+        synchronized void add(float[] valores) {
+            count++;
+            for (int i = 0; i < valores.length; i++) {
+                sum[i] += valores[i];
+                min[i] = Math.min(min[i], valores[i]);
+                max[i] = Math.max(max[i], valores[i]);
+            }
+        }
+
+        synchronized void write(DataOutputStream out) throws IOException {
+            out.writeLong(count);
+            for (int i = 0; i < sum.length; i++) {
+                out.writeFloat(min[i]);
+                out.writeFloat(max[i]);
+                out.writeDouble(sum[i]);
+            }
+        }
+
+        static Rollup read(DataInputStream in) throws IOException {
+            Rollup rollup = new Rollup();
+            rollup.count = in.readLong();
+            for (int i = 0; i < rollup.sum.length; i++) {
+                rollup.min[i] = in.readFloat();
+                rollup.max[i] = in.readFloat();
+                rollup.sum[i] = in.readDouble();
+            }
+            return rollup;
+        }
+
+        synchronized WeatherAggregate toEntity(Series series, long bucket) {
+            WeatherAggregate aggregate = new WeatherAggregate(series.microcontrollerId, series.region, series.resolution.getNome(), bucket);
+            aggregate.setCount(count);
+            aggregate.setMinPressure(min[WeatherColumnStore.PRESSURE]);
+            aggregate.setMaxPressure(max[WeatherColumnStore.PRESSURE]);
+            aggregate.setSumPressure(sum[WeatherColumnStore.PRESSURE]);
+            aggregate.setMinRadiation(min[WeatherColumnStore.RADIATION]);
+            aggregate.setMaxRadiation(max[WeatherColumnStore.RADIATION]);
+            aggregate.setSumRadiation(sum[WeatherColumnStore.RADIATION]);
+            aggregate.setMinTemperature(min[WeatherColumnStore.TEMPERATURE]);
+            aggregate.setMaxTemperature(max[WeatherColumnStore.TEMPERATURE]);
+            aggregate.setSumTemperature(sum[WeatherColumnStore.TEMPERATURE]);
+            aggregate.setMinHumidity(min[WeatherColumnStore.HUMIDITY]);
+            aggregate.setMaxHumidity(max[WeatherColumnStore.HUMIDITY]);
+            aggregate.setSumHumidity(sum[WeatherColumnStore.HUMIDITY]);
+            return aggregate;
+        }
+    }
+
+    private static class Series {
+        final Integer microcontrollerId;
+        final String region;
+        final Resolution resolution;
+        final ConcurrentSkipListMap<Long, Rollup> buckets = new ConcurrentSkipListMap<>();
+
+        Series(Integer microcontrollerId, String region, Resolution resolution) {
+            this.microcontrollerId = microcontrollerId;
+            this.region = region;
+            this.resolution = resolution;
+        }
+
+        void add(long tempo, float[] valores) {
+            buckets.computeIfAbsent(resolution.bucket(tempo), k -> new Rollup()).add(valores);
+        }
+    }
+
+    // Cada congelamento grava um segmento "rollups-<resolução>-<marca>.dat" por resolução, só com os buckets que congelou
+    private static final String DIRETORIO = "/app/database/rollups";
+    private static final String PREFIXO_SEGMENTO = "rollups-";
+    private static final String SUFIXO_SEGMENTO = ".dat";
+    private static final String ARQUIVO_ANTIGO = "/app/database/rollups.dat";
+    private static final int VERSAO_ARQUIVO_ANTIGO = 1;
+
+    private AES aes;
+
+    // Buckets que começam antes da marca d'água estão congelados: os registros brutos deles já
+    // podem ter expirado, então vêm do arquivo de rollups e não são reconstruídos pelas colunas
+    private volatile long marcaDagua = Long.MIN_VALUE;
+
+    // Séries por escopo; a chave é (resolução, id do microcontrolador ou "*", região ou "*")
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    // Atalho por dispositivo para as séries que uma leitura dele atualiza
+    private final Map<String, Series[]> seriesPorDispositivo = new ConcurrentHashMap<>();
+
+    public AggregateDAO(WeatherDataDAO weatherDataDAO) {
+        KeyStoreManager keyStoreManager = new KeyStoreManager();
+        this.aes = new AES(keyStoreManager.getSecretKey());
+
+        loadDiskDatabase();
+        rebuild(weatherDataDAO.getColumnStore());
+    }
+
+    public void addWeatherData(WeatherData weather) {
+        MicrocontrollerEntity mc = weather.getMicrocontroller();
+        float[] valores = { weather.getPressure(), weather.getRadiation(), weather.getTemperature(), weather.getHumidity() };
+        add(weather.getTime().getTime(), mc.getId(), mc.getRegion(), valores);
+    }
+
+    /**
+     * Retorna os rollups do escopo com início do intervalo em [de, ate), em ordem de tempo.
+     * @param microcontrollerId O microcontrolador, ou null para a região inteira.
+     * @param region A região, ou null (junto com o id) para todas as leituras.
+     */
+    public WeatherAggregate[] select(Resolution resolution, Integer microcontrollerId, String region, long de, long ate) {
+        LogDAO.addLog("[DB SELECT] Selecionando rollups " + resolution.getNome() + " de " + chave(resolution, microcontrollerId, region));
+
+        Series escopo = series.get(chave(resolution, microcontrollerId, region));
+        if (escopo == null || resolution.bucket(de) >= ate) {
+            return new WeatherAggregate[0];
+        }
+
+        List<WeatherAggregate> aggregates = new ArrayList<>();
+        for (Map.Entry<Long, Rollup> entry : escopo.buckets.subMap(resolution.bucket(de), true, ate, false).entrySet()) {
+            aggregates.add(entry.getValue().toEntity(escopo, entry.getKey()));
+        }
+        return aggregates.toArray(new WeatherAggregate[0]);
+    }
+
+    /**
+     * Descarta os buckets da resolução que começam antes de {@code tempo}.
+     */
+    public void expireBefore(Resolution resolution, long tempo) {
+        int removidos = 0;
+        for (Series escopo : series.values()) {
+            if (escopo.resolution == resolution) {
+                SortedMap<Long, Rollup> expirados = escopo.buckets.headMap(tempo);
+                removidos += expirados.size();
+                expirados.clear();
+            }
+        }
+
+        if (removidos > 0) {
+            LogDAO.addLog("[ROLLUP EXPIRE] " + removidos + " rollups " + resolution.getNome() + " removidos");
+        }
+    }
+
+
+    /**
+     * Congela os buckets anteriores a {@code novaMarca} e grava em disco só os que foram congelados
+     * agora, [marca anterior, nova marca), como um novo segmento por resolução; os segmentos anteriores
+     * não são tocados. Deve ser chamado antes de expirar os registros brutos desse período.
+     */
+    public synchronized void freezeBefore(long novaMarca) throws IOException {
+        long anterior = marcaDagua;
+        if (novaMarca <= anterior) {
+            return;
+        }
+
+        int seriesGravadas = gravarSegmentos(anterior, novaMarca);
+        marcaDagua = novaMarca;
+        LogDAO.addLog("[ROLLUP FREEZE] Rollups entre " + anterior + " e " + novaMarca + " gravados (" + seriesGravadas + " séries)");
+    }
+
+
+    /**
+     * Apaga os segmentos congelados da resolução cujos buckets começam todos antes de {@code tempo}.
+     * Cada resolução tem os próprios segmentos, então uma retenção "forever" não segura as outras.
+     */
+    public synchronized void discardFrozenBefore(Resolution resolution, long tempo) {
+        int removidos = 0;
+        for (File segmento : segmentos()) {
+            if (resolucaoDoSegmento(segmento) == resolution && marcaDoSegmento(segmento) <= tempo && segmento.delete()) {
+                removidos++;
+            }
+        }
+
+        if (removidos > 0) {
+            LogDAO.addLog("[ROLLUP EXPIRE] " + removidos + " segmentos de rollups " + resolution.getNome() + " removidos");
+        }
+    }
+
+
+    /**
+     * Grava os buckets em [de, ate) num segmento por resolução (só as que têm buckets nesse intervalo).
+     * @return Quantas séries foram gravadas.
+     */
+    private int gravarSegmentos(long de, long ate) throws IOException {
+        File diretorio = new File(DIRETORIO);
+        if (!diretorio.isDirectory() && !diretorio.mkdirs()) {
+            throw new IOException("Não foi possível criar o diretório de rollups " + DIRETORIO);
+        }
+
+        int seriesGravadas = 0;
+        for (Resolution resolution : Resolution.values()) {
+            File destino = new File(diretorio, PREFIXO_SEGMENTO + resolution.getNome() + "-" + ate + SUFIXO_SEGMENTO);
+            SnapshotFile.Writer writer = null;
+            try {
+                for (Series escopo : series.values()) {
+                    if (escopo.resolution != resolution) {
+                        continue;
+                    }
+
+                    // Cópia para que o número de buckets escrito bata com os buckets que seguem
+                    List<Map.Entry<Long, Rollup>> buckets = new ArrayList<>(escopo.buckets.subMap(de, ate).entrySet());
+                    if (!buckets.isEmpty()) {
+                        if (writer == null) {
+                            writer = SnapshotFile.create(destino, aes);
+                        }
+                        writer.add(encodeSerie(escopo, buckets));
+                        seriesGravadas++;
+                    }
+                }
+                if (writer != null) {
+                    writer.commit();
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return seriesGravadas;
+    }
+
+
+    private static byte[] encodeSerie(Series escopo, List<Map.Entry<Long, Rollup>> buckets) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeBoolean(escopo.microcontrollerId != null);
+        if (escopo.microcontrollerId != null) out.writeInt(escopo.microcontrollerId);
+        out.writeBoolean(escopo.region != null);
+        if (escopo.region != null) out.writeUTF(escopo.region);
+        out.writeByte(escopo.resolution.ordinal());
+
+        out.writeInt(buckets.size());
+        for (Map.Entry<Long, Rollup> entry : buckets) {
+            out.writeLong(entry.getKey());
+            entry.getValue().write(out);
+        }
+        out.close();
+        return baos.toByteArray();
+    }
+
+
+    private void readSerie(DataInputStream in) throws IOException {
+        Integer mcId = in.readBoolean() ? in.readInt() : null;
+        String region = in.readBoolean() ? in.readUTF() : null;
+        Series escopo = serie(Resolution.values()[in.readByte()], mcId, region);
+
+        int buckets = in.readInt();
+        for (int j = 0; j < buckets; j++) {
+            long inicio = in.readLong();
+            escopo.buckets.put(inicio, Rollup.read(in));
+        }
+    }
+
+
+    /**
+     * Carrega os segmentos em ordem de marca, um bloco por vez; a marca d'água é a maior delas.
+     * Arquivos de formatos anteriores (rollups.dat e segmentos com todas as resoluções) são
+     * regravados como segmentos por resolução e apagados.
+     */
+    private void loadDiskDatabase() {
+        List<File> antigos = new ArrayList<>();
+        long marcaAntiga = loadLegacyDatabase();
+        if (marcaAntiga != Long.MIN_VALUE) {
+            antigos.add(new File(ARQUIVO_ANTIGO));
+        }
+
+        for (File segmento : segmentos()) {
+            try {
+                SnapshotFile.read(segmento, aes, registro -> {
+                    try {
+                        readSerie(new DataInputStream(new ByteArrayInputStream(registro)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                marcaDagua = Math.max(marcaDagua, marcaDoSegmento(segmento));
+                if (resolucaoDoSegmento(segmento) == null) {
+                    antigos.add(segmento);
+                    marcaAntiga = Math.max(marcaAntiga, marcaDoSegmento(segmento));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                LogDAO.addLog("[ROLLUP ERROR] Falha ao carregar o segmento " + segmento.getName() + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        if (!antigos.isEmpty()) {
+            try {
+                gravarSegmentos(Long.MIN_VALUE, marcaAntiga);
+                for (File antigo : antigos) {
+                    antigo.delete();
+                }
+                LogDAO.addLog("[ROLLUP] " + antigos.size() + " arquivos de rollups no formato antigo convertidos");
+            } catch (IOException e) {
+                LogDAO.addLog("[ROLLUP ERROR] Falha ao converter rollups do formato antigo: " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Formato antigo: um único arquivo com todos os buckets congelados, cifrado de uma vez.
+     * @return A marca d'água gravada nele, ou Long.MIN_VALUE se não existe ou não pôde ser lido.
+     */
+    private long loadLegacyDatabase() {
+        File file = new File(ARQUIVO_ANTIGO);
+        if (!file.exists()) {
+            return Long.MIN_VALUE;
+        }
+
+        try {
+            FileInputStream fileIn = new FileInputStream(file);
+            byte[] fileContent = fileIn.readAllBytes();
+            fileIn.close();
+
+            byte[] decryptedData = aes.decrypt(fileContent);
+            if (decryptedData == null) {
+                System.err.println("Falha ao descriptografar os rollups.");
+                return Long.MIN_VALUE;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(decryptedData));
+            if (in.readInt() != VERSAO_ARQUIVO_ANTIGO) {
+                System.err.println("Versão desconhecida do arquivo de rollups.");
+                return Long.MIN_VALUE;
+            }
+
+            long marca = in.readLong();
+            int quantidade = in.readInt();
+            for (int i = 0; i < quantidade; i++) {
+                readSerie(in);
+            }
+            marcaDagua = Math.max(marcaDagua, marca);
+            return marca;
+        } catch (IOException e) {
+            LogDAO.addLog("[ROLLUP ERROR] Falha ao carregar rollups: " + e.getMessage());
+            e.printStackTrace();
+            return Long.MIN_VALUE;
+        }
+    }
+
+
+    /**
+     * Segmentos gravados, em ordem crescente de marca. O nome é "rollups-&lt;resolução&gt;-&lt;marca&gt;.dat";
+     * "rollups-&lt;marca&gt;.dat", sem resolução, é o formato anterior com todas as resoluções juntas.
+     */
+    private static List<File> segmentos() {
+        File[] arquivos = new File(DIRETORIO).listFiles((dir, nome) -> nome.startsWith(PREFIXO_SEGMENTO) && nome.endsWith(SUFIXO_SEGMENTO));
+        List<File> segmentos = new ArrayList<>();
+        if (arquivos != null) {
+            for (File arquivo : arquivos) {
+                if (marcaDoSegmento(arquivo) != Long.MIN_VALUE) {
+                    segmentos.add(arquivo);
+                }
+            }
+        }
+        segmentos.sort(Comparator.comparingLong(AggregateDAO::marcaDoSegmento));
+        return segmentos;
+    }
+
+    private static String nomeDoSegmento(File segmento) {
+        String nome = segmento.getName();
+        return nome.substring(PREFIXO_SEGMENTO.length(), nome.length() - SUFIXO_SEGMENTO.length());
+    }
+
+    private static long marcaDoSegmento(File segmento) {
+        String nome = nomeDoSegmento(segmento);
+        try {
+            return Long.parseLong(nome.substring(nome.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * @return A resolução do segmento, ou null num segmento do formato anterior.
+     */
+    private static Resolution resolucaoDoSegmento(File segmento) {
+        String nome = nomeDoSegmento(segmento);
+        int separador = nome.lastIndexOf('-');
+        if (separador <= 0) {
+            return null;
+        }
+        try {
+            return Resolution.parse(nome.substring(0, separador));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+
+    private void add(long tempo, int mcId, String region, float[] valores) {
+        Series[] alvos = seriesPorDispositivo.computeIfAbsent(mcId + "|" + region, k -> {
+            Resolution[] resolutions = Resolution.values();
+            Series[] novas = new Series[resolutions.length * 3];
+            for (int i = 0; i < resolutions.length; i++) {
+                novas[i * 3] = serie(resolutions[i], mcId, region);
+                novas[i * 3 + 1] = serie(resolutions[i], null, region);
+                novas[i * 3 + 2] = serie(resolutions[i], null, null);
+            }
+            return novas;
+        });
+
+        for (Series alvo : alvos) {
+            alvo.add(tempo, valores);
+        }
+    }
+
+    private Series serie(Resolution resolution, Integer microcontrollerId, String region) {
+        return series.computeIfAbsent(chave(resolution, microcontrollerId, region), k -> new Series(microcontrollerId, region, resolution));
+    }
+
+    /**
+     * Reconstrói os rollups não congelados varrendo as colunas primitivas, sem materializar os registros.
+     */
+    private void rebuild(WeatherColumnStore columnStore) {
+        long leituras = columnStore.forEachRow(marcaDagua, (tempo, dispositivo, valores) -> {
+            MicrocontrollerEntity mc = columnStore.getDeviceEntity(dispositivo);
+            add(tempo, mc.getId(), mc.getRegion(), valores);
+        });
+
+        LogDAO.addLog("[ROLLUP] Rollups reconstruídos a partir de " + leituras + " leituras");
+    }
+
+    private static String chave(Resolution resolution, Integer microcontrollerId, String region) {
+        return resolution.getNome() + "|" + (microcontrollerId != null ? microcontrollerId : "*") + "|" + (region != null ? region : "*");
+    }
+}
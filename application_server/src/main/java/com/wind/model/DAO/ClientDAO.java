@@ -2,35 +2,61 @@ package com.wind.model.DAO;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.wind.datastructures.Hash;
 import com.wind.entities.ClientEntity;
+import com.wind.model.storage.SnapshotFile;
+import com.wind.model.storage.WriteAheadLog;
 import com.wind.security.AES;
 import com.wind.security.KeyStoreManager;
 import com.wind.security.PasswordManager;
+import com.wind.security.SessionCache;
 
 public class ClientDAO {
     private Hash<ClientEntity> clientHash;
+    // Índice por nome de usuário, mantido junto com a Hash para login e cadastro não varrerem todos os clientes
+    private final Map<String, ClientEntity> clientesPorUsuario = new ConcurrentHashMap<>();
+    private final SessionCache sessoes = new SessionCache();
     private int ocupacao;
     private AES aes;
+    private WriteAheadLog wal;
 
     private final String ARQUIVO = "/app/database/clients.dat";
+    private final String DIRETORIO_WAL = "/app/database/clients-wal";
     private final int TAMANHO_INICIAL = 100;
 
+    // Cadastros são raros: cada alteração vai para o disco na hora e o snapshot é refeito a cada N alterações
+    private final int REGISTROS_POR_CHECKPOINT = Integer.parseInt(System.getenv().getOrDefault("CLIENT_CHECKPOINT_RECORDS", "1000"));
+    private static final long TAMANHO_SEGMENTO_WAL = 4L * 1024 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private int registrosDesdeCheckpoint = 0;
+
     public ClientDAO() {
         KeyStoreManager keyStoreManager = new KeyStoreManager();
         this.aes = new AES(keyStoreManager.getSecretKey());
+        this.wal = new WriteAheadLog(DIRETORIO_WAL, TAMANHO_SEGMENTO_WAL, aes, WriteAheadLog.Durability.BATCH, 1, 1000, 1000);
 
-        clientHash = new Hash<>(TAMANHO_INICIAL);
+        clientHash = new Hash<>("clients", TAMANHO_INICIAL);
         loadDiskDatabase();
         ocupacao = clientHash.getOcupacao();
+
+        try {
+            wal.open();
+        } catch (IOException e) {
+            throw new RuntimeException("Não foi possível abrir o WAL de clientes", e);
+        }
     }
 
     public ClientEntity[] selectAll() {
@@ -39,16 +65,16 @@ public class ClientDAO {
         return list.toArray(new ClientEntity[0]);
     }
 
-    public void addClient(ClientEntity client) {
+    public synchronized void addClient(ClientEntity client) {
         client.setId(clientHash.getOcupacao() + 1);
         
         // Hash password before storing
         String hashedPassword = PasswordManager.hashPassword(client.getPassword());
         client.setPassword(hashedPassword);
         
-        clientHash.inserir(client.getId(), client);
+        colocar(client);
         ocupacao++;
-        updateArquivo();
+        appendWal(encodePut(client));
     }
 
     public ClientEntity getClient(int id) {
@@ -61,23 +87,26 @@ public class ClientDAO {
         return client;
     }
 
-    public boolean updateClient(ClientEntity client) {
-        if (clientHash.buscar(client.getId()) == null) {
+    public synchronized boolean updateClient(ClientEntity client) {
+        ClientEntity anterior = clientHash.buscar(client.getId());
+        if (anterior == null) {
             LogDAO.addLog("[DB MISS] Cliente " + client.getId() + " não encontrado");
             return false;
         }
-        clientHash.inserir(client.getId(), client);
+        colocar(client);
+        sessoes.invalidate(anterior.getUsername());
         LogDAO.addLog("[DB UPDATE] Cliente " + client.getId() + " atualizado");
-        updateArquivo();
+        appendWal(encodePut(client));
         return true;
     }
 
-    public ClientEntity deleteClient(int id) {
+    public synchronized ClientEntity deleteClient(int id) {
         try {
-            ClientEntity client = clientHash.remover(id);
+            ClientEntity client = retirar(id);
+            sessoes.invalidate(client.getUsername());
             ocupacao--;
             LogDAO.addLog("[DB DELETE] Cliente " + id + ", ocupação: " + ocupacao + "/" + clientHash.getTamanho());
-            updateArquivo();
+            appendWal(encodeDelete(id));
             return client;
         } catch (Exception e) {
             LogDAO.addLog("[DB MISS] Cliente " + id + " não encontrado");
@@ -86,78 +115,170 @@ public class ClientDAO {
     }
     
     public ClientEntity authenticate(String username, String password) {
-        ClientEntity[] clients = selectAll();
-        for (ClientEntity client : clients) {
-            if (client.getUsername().equals(username)) {
-                if (PasswordManager.verifyPassword(password, client.getPassword())) {
-                    LogDAO.addLog("[AUTH SUCCESS] Cliente " + username + " autenticado");
-                    return client;
-                }
-            }
+        ClientEntity client = username != null && password != null ? clientesPorUsuario.get(username) : null;
+        if (client != null && sessoes.verify(username, password, client.getPassword())) {
+            LogDAO.addLog("[AUTH SUCCESS] Cliente " + username + " autenticado");
+            return client;
         }
         LogDAO.addLog("[AUTH FAIL] Falha na autenticação para " + username);
         return null;
     }
 
     public boolean exists(String username) {
-        ClientEntity[] clients = selectAll();
-        for (ClientEntity client : clients) {
-            if (client.getUsername().equals(username)) {
-                return true;
+        return username != null && clientesPorUsuario.containsKey(username);
+    }
+
+    /**
+     * Abre uma sessão para um cliente já autenticado.
+     * @return Token a ser enviado nas próximas requisições.
+     */
+    public String openSession(ClientEntity client) {
+        return sessoes.open(client.getId(), client.getUsername());
+    }
+
+    /**
+     * Cliente dono de uma sessão válida, sem verificar senha de novo.
+     * @return null se o token não existe ou expirou.
+     */
+    public ClientEntity getBySession(String token) {
+        int id = sessoes.resolve(token);
+        return id < 0 ? null : clientHash.buscar(id);
+    }
+
+    public void closeSession(String token) {
+        sessoes.close(token);
+    }
+
+    /**
+     * Insere ou substitui um cliente na Hash e no índice por nome de usuário.
+     */
+    private void colocar(ClientEntity client) {
+        ClientEntity anterior = clientHash.buscar(client.getId());
+        clientHash.inserir(client.getId(), client);
+        if (anterior != null && anterior.getUsername() != null) {
+            clientesPorUsuario.remove(anterior.getUsername(), anterior);
+        }
+        if (client.getUsername() != null) {
+            clientesPorUsuario.put(client.getUsername(), client);
+        }
+    }
+
+    private ClientEntity retirar(int id) throws Exception {
+        ClientEntity client = clientHash.remover(id);
+        if (client.getUsername() != null) {
+            clientesPorUsuario.remove(client.getUsername(), client);
+        }
+        return client;
+    }
+
+    private void appendWal(byte[] registro) {
+        try {
+            wal.append(registro);
+        } catch (IOException e) {
+            LogDAO.addLog("[DB ERROR] Falha ao gravar no WAL de clientes: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+
+        registrosDesdeCheckpoint++;
+        if (registrosDesdeCheckpoint >= REGISTROS_POR_CHECKPOINT) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Grava um snapshot dos clientes e descarta os segmentos do WAL cobertos por ele.
+     */
+    public synchronized void checkpoint() {
+        try {
+            long segmentoCoberto = wal.roll();
+            try (SnapshotFile.Writer writer = SnapshotFile.create(new File(ARQUIVO), aes)) {
+                for (ClientEntity client : clientHash.getAll()) {
+                    writer.add(encodePut(client));
+                }
+                writer.commit();
             }
+            wal.discardUpTo(segmentoCoberto);
+            registrosDesdeCheckpoint = 0;
+        } catch (IOException e) {
+            LogDAO.addLog("[DB ERROR] Falha no checkpoint de clientes: " + e.getMessage());
+            e.printStackTrace();
         }
-        return false;
     }
 
-    private void updateArquivo() {
+    private byte[] encodePut(ClientEntity client) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             ObjectOutputStream out = new ObjectOutputStream(baos);
-            out.writeObject(clientHash);
+            out.writeByte(OP_PUT);
+            out.writeObject(client);
             out.close();
-            
-            byte[] encryptedData = aes.encrypt(baos.toByteArray());
-            
-            FileOutputStream file = new FileOutputStream(ARQUIVO);
-            file.write(encryptedData);
-            file.close();
+            return baos.toByteArray();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new RuntimeException("Erro ao serializar cliente " + client.getId(), e);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void loadDiskDatabase() {
+    private byte[] encodeDelete(int codigo) {
+        return new byte[] { OP_DELETE, (byte) (codigo >>> 24), (byte) (codigo >>> 16), (byte) (codigo >>> 8), (byte) codigo };
+    }
+
+    private void applyRegistro(byte[] registro) {
         try {
-            File file = new File(ARQUIVO);
-            if (!file.exists()) {
-                File parent = file.getParentFile();
-                if (parent != null && !parent.exists()) {
-                    parent.mkdirs();
-                }
-                file.createNewFile();
+            if (registro[0] == OP_DELETE) {
+                int id = new DataInputStream(new ByteArrayInputStream(registro, 1, 4)).readInt();
+                retirar(id);
             } else {
-                FileInputStream fileIn = new FileInputStream(ARQUIVO);
-                byte[] fileContent = fileIn.readAllBytes();
-                fileIn.close();
-                
-                if (fileContent.length > 0) {
-                    byte[] decryptedData = aes.decrypt(fileContent);
-                    if (decryptedData != null) {
-                        ByteArrayInputStream bais = new ByteArrayInputStream(decryptedData);
-                        ObjectInputStream objectIn = new ObjectInputStream(bais);
-                        clientHash = (Hash<ClientEntity>) objectIn.readObject();
-                        objectIn.close();
-                    } else {
-                        System.err.println("Falha ao descriptografar o banco de dados de clientes.");
-                        clientHash = new Hash<>(TAMANHO_INICIAL);
-                    }
-                }
+                ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(registro));
+                objectIn.readByte();
+                ClientEntity client = (ClientEntity) objectIn.readObject();
+                colocar(client);
+            }
+        } catch (Exception e) {
+            LogDAO.addLog("[WAL ERROR] Registro de cliente inválido ignorado durante o replay: " + e.getMessage());
+        }
+    }
+
+    public void loadDiskDatabase() {
+        // Snapshot "clients.dat" seguido do replay do WAL de clientes
+        File file = new File(ARQUIVO);
+
+        try {
+            if (SnapshotFile.isSnapshot(file)) {
+                SnapshotFile.read(file, aes, this::applyRegistro);
+            } else if (file.length() > 0) {
+                loadLegacyDatabase(file);
             }
         } catch (IOException e) {
-            clientHash = new Hash<>(TAMANHO_INICIAL);
+            System.err.println("Falha ao ler o banco de dados de clientes: " + e.getMessage());
+            clientHash = new Hash<>("clients", TAMANHO_INICIAL);
+            clientesPorUsuario.clear();
+        }
+
+        wal.replay(this::applyRegistro);
+    }
+
+    /**
+     * Formato antigo: a Hash inteira serializada e criptografada de uma vez.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadLegacyDatabase(File file) throws IOException {
+        byte[] decryptedData = aes.decrypt(Files.readAllBytes(file.toPath()));
+        if (decryptedData == null) {
+            System.err.println("Falha ao descriptografar o banco de dados de clientes.");
+            return;
+        }
+
+        try (ObjectInputStream objectIn = new com.wind.datastructures.legacy.Hash.InputStream(new ByteArrayInputStream(decryptedData))) {
+            for (ClientEntity client : ((com.wind.datastructures.legacy.Hash<ClientEntity>) objectIn.readObject()).getAll()) {
+                colocar(client);
+            }
         } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            throw new IOException(e);
         }
     }
+
+    public void close() {
+        wal.close();
+    }
 }
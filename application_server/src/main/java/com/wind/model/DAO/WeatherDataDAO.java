@@ -1,75 +1,277 @@
 package com.wind.model.DAO;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import com.wind.datastructures.Hash;
+import com.wind.datastructures.MicrocontrollerIndex;
+import com.wind.datastructures.TimePostings;
+import com.wind.entities.WeatherAggregate;
 import com.wind.entities.WeatherData;
 import com.wind.entities.MicrocontrollerEntity;
+import com.wind.entities.WeatherPage;
+import com.wind.message.WeatherCodec;
+import com.wind.model.storage.SnapshotFile;
+import com.wind.model.storage.WeatherTable;
+import com.wind.model.storage.WeatherColumnStore;
+import com.wind.model.storage.WriteAheadLog;
 import com.wind.security.AES;
 import com.wind.security.KeyStoreManager;
 
 public class WeatherDataDAO {
-    private Hash<WeatherData> weatherDataHash;
+    private WeatherTable weatherTable;
     private int ocupacao;
     private AES aes;
+    private WriteAheadLog wal;
+    private WeatherColumnStore columnStore;
+    private final MicrocontrollerIndex microcontrollerIndex = new MicrocontrollerIndex();
+    private final TimePostings timeIndex = new TimePostings();
 
     //private final String ARQUIVO = "database/database.dat";
     private final String ARQUIVO = "/app/database/database.dat";
-    private final int TAMANHO_INICIAL = 100; 
+    private final String DIRETORIO_WAL = "/app/database/wal";
+    private final String DIRETORIO_COLUNAS = "/app/database/columns";
+
+    // Tamanho máximo de cada segmento do WAL e quantos registros disparam um checkpoint
+    private final long TAMANHO_SEGMENTO_WAL = Long.parseLong(System.getenv().getOrDefault("WAL_SEGMENT_BYTES", "16777216"));
+    private final int REGISTROS_POR_CHECKPOINT = Integer.parseInt(System.getenv().getOrDefault("WAL_CHECKPOINT_RECORDS", "50000"));
+    // Group commit: batch = fsync a cada lote, interval = fsync periódico, os = sem fsync explícito
+    private final WriteAheadLog.Durability DURABILIDADE_WAL = WriteAheadLog.Durability.parse(System.getenv().getOrDefault("WAL_DURABILITY", "interval"));
+    private final int REGISTROS_POR_LOTE_WAL = Integer.parseInt(System.getenv().getOrDefault("WAL_BATCH_RECORDS", "256"));
+    private final long JANELA_LOTE_WAL_MS = Long.parseLong(System.getenv().getOrDefault("WAL_BATCH_WINDOW_MS", "5"));
+    private final long INTERVALO_FSYNC_WAL_MS = Long.parseLong(System.getenv().getOrDefault("WAL_FSYNC_INTERVAL_MS", "1000"));
+
+    // Tipos de registro do WAL
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_EXPIRE = 3;
+    // Primeiro byte de um stream do ObjectOutputStream (0xACED), usado pelos registros antigos
+    private static final byte CABECALHO_SERIALIZACAO_JAVA = (byte) 0xAC;
+
+    // Quantos registros a retenção remove por vez antes de liberar o consumidor
+    private static final int LOTE_EXPIRACAO = 1000;
+
+    private int ultimoId;
+
+    private int registrosDesdeCheckpoint = 0;
+    // Um checkpoint no meio de uma expiração cobriria o registro EXPIRE com uma tabela expirada pela metade
+    private final Object travaExpiracao = new Object();
+    private final AtomicBoolean checkpointPendente = new AtomicBoolean(false);
+    private final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "WeatherData-Checkpoint-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     public WeatherDataDAO() {
         KeyStoreManager keyStoreManager = new KeyStoreManager();
         this.aes = new AES(keyStoreManager.getSecretKey());
+        this.wal = new WriteAheadLog(DIRETORIO_WAL, TAMANHO_SEGMENTO_WAL, aes, DURABILIDADE_WAL,
+                REGISTROS_POR_LOTE_WAL, JANELA_LOTE_WAL_MS, INTERVALO_FSYNC_WAL_MS);
         
-        weatherDataHash = new Hash<>(TAMANHO_INICIAL);
+        weatherTable = new WeatherTable();
         loadDiskDatabase();
-        ocupacao = weatherDataHash.getOcupacao();
+        ocupacao = weatherTable.getOcupacao();
+
+        try {
+            wal.open();
+            columnStore = new WeatherColumnStore(DIRETORIO_COLUNAS);
+
+            // Índices e colunas são refeitos percorrendo a tabela em ordem de id, sem materializar a base
+            rebuildIndexes();
+
+            ultimoId = Math.max(0, weatherTable.getMaiorId());
+            if (!columnStore.isEmpty()) {
+                ultimoId = Math.max(ultimoId, columnStore.getId(columnStore.size() - 1));
+            }
+            syncColumnStore();
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao abrir o armazenamento de dados climáticos", e);
+        }
     }
 
 
     public WeatherData[] selectAll() {
         LogDAO.addLog("[DB SELECT] Selecionando todas as informações climáticas");
 
-        List<WeatherData> list = weatherDataHash.getAll();
+        List<WeatherData> list = weatherTable.getAll();
         return list.toArray(new WeatherData[0]);
     }
 
 
+    /**
+     * Retorna uma página de registros com tempo em [de, ate), em ordem de chegada.
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira.
+     * @throws IllegalArgumentException Se o cursor for inválido.
+     */
+    public WeatherPage selectPage(long de, long ate, int limite, String cursor) {
+        LogDAO.addLog("[DB SELECT] Selecionando página de informações climáticas (limite " + limite + ")");
+
+        TimePostings.Snapshot postings = timeIndex.snapshot();
+        int tamanho = postings.size();
+
+        int posicao = postings.lowerBound(de);
+        if (cursor != null) {
+            long[] ultimo = decodeCursor(cursor);
+            posicao = postings.lowerBound(Math.max(de, ultimo[0]));
+
+            // Pula os registros com o mesmo tempo que já foram entregues
+            while (posicao < tamanho && postings.getTime(posicao) == ultimo[0] && postings.getId(posicao) <= ultimo[1]) {
+                posicao++;
+            }
+        }
+
+        List<WeatherData> itens = new ArrayList<>(Math.min(limite, 1024));
+        while (posicao < tamanho && itens.size() < limite && postings.getTime(posicao) < ate) {
+            WeatherData weather = weatherTable.buscar(postings.getId(posicao));
+            if (weather != null) {
+                itens.add(weather);
+            }
+            posicao++;
+        }
+
+        String proximo = null;
+        if (posicao < tamanho && postings.getTime(posicao) < ate && !itens.isEmpty()) {
+            proximo = encodeCursor(postings.getTime(posicao - 1), postings.getId(posicao - 1));
+        }
+
+        return new WeatherPage(itens.toArray(new WeatherData[0]), proximo);
+    }
+
+
     public WeatherData[] selectByMicrocontroller(MicrocontrollerEntity microcontroller) {
         LogDAO.addLog("[DB SELECT] Selecionando informações climáticas do microcontrolador " + microcontroller.getId());
-        List<WeatherData> all = weatherDataHash.getAll();
-        List<WeatherData> filtered = new ArrayList<>();
-        for (WeatherData wd : all) {
-             if (wd.getMicrocontroller() != null && wd.getMicrocontroller().equals(microcontroller)) {
-                 filtered.add(wd);
-             }
+        TimePostings lista = microcontrollerIndex.get(microcontroller);
+        if (lista == null) {
+            return new WeatherData[0];
+        }
+
+        TimePostings.Snapshot postings = lista.snapshot();
+        int tamanho = postings.size();
+        List<WeatherData> filtered = new ArrayList<>(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            // Registros removidos continuam nos postings; são descartados aqui
+            WeatherData wd = weatherTable.buscar(postings.getId(i));
+            if (wd != null && wd.getMicrocontroller() != null && wd.getMicrocontroller().equals(microcontroller)) {
+                filtered.add(wd);
+            }
         }
         return filtered.toArray(new WeatherData[0]);
     }
 
 
-    public void addWeatherData(WeatherData weather) {
-        weather.setId(weatherDataHash.getOcupacao() + 1);
-        weatherDataHash.inserir(weather.getId(), weather);
+    public synchronized void addWeatherData(WeatherData weather) {
+        // Ids nunca são reaproveitados, mesmo depois que a retenção remove registros antigos
+        weather.setId(++ultimoId);
+        weatherTable.inserir(weather.getId(), weather);
         ocupacao++;
 
-        //LogDAO.addLog("[DB INSERT] Novo registro climático " + weather.getId() + ", ocupação: " + ocupacao + "/" + weatherDataHash.getTamanho());
+        //LogDAO.addLog("[DB INSERT] Novo registro climático " + weather.getId() + ", ocupação: " + ocupacao + "/" + weatherTable.getTamanho());
         
-        updateArquivo();
+        appendWal(encodePut(weather));
+        appendColumns(weather);
+        indexar(weather);
+    }
+
+
+    /**
+     * Agrega as leituras com tempo em [de, ate) direto das colunas mapeadas em memória,
+     * sem materializar os registros.
+     * @param microcontrollerId O microcontrolador, ou null para a região inteira.
+     * @param region A região, ou null (junto com o id) para todas as leituras.
+     */
+    public WeatherAggregate summarize(long de, long ate, Integer microcontrollerId, String region) {
+        LogDAO.addLog("[DB SELECT] Resumindo leituras de " + de + " a " + ate);
+
+        boolean[] dispositivos = null;
+        if (microcontrollerId != null) {
+            int codigo = columnStore.findDevice(new MicrocontrollerEntity(microcontrollerId, region));
+            dispositivos = new boolean[Math.max(0, codigo + 1)];
+            if (codigo >= 0) {
+                dispositivos[codigo] = true;
+            }
+        } else if (region != null) {
+            dispositivos = columnStore.findDevices(region);
+        }
+
+        WeatherColumnStore.Stats stats = columnStore.summarize(de, ate, dispositivos);
+        WeatherAggregate aggregate = new WeatherAggregate(microcontrollerId, region, "raw", de);
+        aggregate.setCount(stats.count);
+        if (stats.count > 0) {
+            aggregate.setMinPressure(stats.min[WeatherColumnStore.PRESSURE]);
+            aggregate.setMaxPressure(stats.max[WeatherColumnStore.PRESSURE]);
+            aggregate.setSumPressure(stats.sum[WeatherColumnStore.PRESSURE]);
+            aggregate.setMinRadiation(stats.min[WeatherColumnStore.RADIATION]);
+            aggregate.setMaxRadiation(stats.max[WeatherColumnStore.RADIATION]);
+            aggregate.setSumRadiation(stats.sum[WeatherColumnStore.RADIATION]);
+            aggregate.setMinTemperature(stats.min[WeatherColumnStore.TEMPERATURE]);
+            aggregate.setMaxTemperature(stats.max[WeatherColumnStore.TEMPERATURE]);
+            aggregate.setSumTemperature(stats.sum[WeatherColumnStore.TEMPERATURE]);
+            aggregate.setMinHumidity(stats.min[WeatherColumnStore.HUMIDITY]);
+            aggregate.setMaxHumidity(stats.max[WeatherColumnStore.HUMIDITY]);
+            aggregate.setSumHumidity(stats.sum[WeatherColumnStore.HUMIDITY]);
+        }
+        return aggregate;
+    }
+
+
+    /**
+     * Remove todos os registros brutos com tempo menor que {@code tempo}.
+     * A remoção é feita em lotes para não segurar o consumidor por muito tempo; checkpoints esperam o fim.
+     * @return Quantos registros foram removidos.
+     */
+    public int expireBefore(long tempo) {
+        synchronized (travaExpiracao) {
+            return expirar(tempo);
+        }
+    }
+
+
+    private int expirar(long tempo) {
+        synchronized (this) {
+            appendWal(encodeExpire(tempo));
+        }
+
+        TimePostings.Snapshot postings = timeIndex.snapshot();
+        int fim = postings.lowerBound(tempo);
+        int removidos = 0;
+
+        for (int inicio = 0; inicio < fim; inicio += LOTE_EXPIRACAO) {
+            synchronized (this) {
+                for (int i = inicio; i < Math.min(fim, inicio + LOTE_EXPIRACAO); i++) {
+                    if (removerSeExistir(postings.getId(i))) {
+                        ocupacao--;
+                        removidos++;
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            timeIndex.removeBefore(tempo);
+            microcontrollerIndex.removeBefore(tempo);
+        }
+        long linhas = columnStore.dropBefore(tempo);
+
+        LogDAO.addLog("[DB EXPIRE] " + removidos + " registros e " + linhas + " linhas colunares anteriores a " + new Date(tempo) + " removidos");
+        return removidos;
     }
 
 
     public WeatherData getWeatherData(int codigo) {
-        WeatherData weather = weatherDataHash.buscar(codigo);
+        WeatherData weather = weatherTable.buscar(codigo);
         
         if (weather == null) {
             LogDAO.addLog("[DB MISS] Registro climático " + codigo + " não encontrado");
@@ -81,28 +283,28 @@ public class WeatherDataDAO {
     }
 
 
-    public boolean updateWeatherData(WeatherData weather) {
-        if (weatherDataHash.buscar(weather.getId()) == null) {
+    public synchronized boolean updateWeatherData(WeatherData weather) {
+        if (weatherTable.buscar(weather.getId()) == null) {
             LogDAO.addLog("[DB MISS] Registro climático " + weather.getId() + " não encontrado");
             return false;
         }
 
-        weatherDataHash.inserir(weather.getId(), weather);
+        weatherTable.inserir(weather.getId(), weather);
         LogDAO.addLog("[DB UPDATE] Registro climático " + weather.getId() + " atualizado");
 
-        updateArquivo();
+        appendWal(encodePut(weather));
         return true;
     }
 
 
-    public WeatherData deleteWeatherData(int codigo) {
+    public synchronized WeatherData deleteWeatherData(int codigo) {
         try {
-            WeatherData weather = weatherDataHash.remover(codigo);
+            WeatherData weather = weatherTable.remover(codigo);
             ocupacao--;
             
-            LogDAO.addLog("[DB DELETE] Registro climático " + codigo + ", ocupação: " + ocupacao + "/" + weatherDataHash.getTamanho());
+            LogDAO.addLog("[DB DELETE] Registro climático " + codigo + ", ocupação: " + ocupacao + "/" + weatherTable.getTamanho());
             
-            updateArquivo();
+            appendWal(encodeDelete(codigo));
             
             return weather;
         } catch (Exception e) {
@@ -112,65 +314,290 @@ public class WeatherDataDAO {
     }
 
 
-    private void updateArquivo() {
+    private void appendWal(byte[] registro) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(baos);
-            out.writeObject(weatherDataHash);
-            out.close();
-            
-            byte[] encryptedData = aes.encrypt(baos.toByteArray());
-            
-            FileOutputStream file = new FileOutputStream(ARQUIVO);
-            file.write(encryptedData);
-            file.close();
+            wal.append(registro);
+        } catch (IOException e) {
+            LogDAO.addLog("[WAL ERROR] Falha ao gravar registro no WAL: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+
+        registrosDesdeCheckpoint++;
+        if (registrosDesdeCheckpoint >= REGISTROS_POR_CHECKPOINT && checkpointPendente.compareAndSet(false, true)) {
+            checkpointExecutor.submit(this::checkpoint);
+        }
+    }
+
+
+    /**
+     * Grava um snapshot completo da tabela e descarta os segmentos do WAL cobertos por ele.
+     * Roda na thread de checkpoint; o lock do DAO cobre só a troca de segmento do WAL.
+     * A tabela é copiada um bloco por vez enquanto as inserções continuam, então o snapshot pode
+     * conter escritas posteriores à troca; elas também estão no WAL, e reaplicá-las por cima dá o mesmo estado.
+     */
+    public void checkpoint() {
+        synchronized (travaExpiracao) {
+            gravarCheckpoint();
+        }
+    }
+
+
+    private void gravarCheckpoint() {
+        try {
+            long segmentoCoberto;
+            synchronized (this) {
+                segmentoCoberto = wal.roll();
+                registrosDesdeCheckpoint = 0;
+            }
+
+            long registros = writeSnapshot();
+            columnStore.force();
+            wal.discardUpTo(segmentoCoberto);
+            LogDAO.addLog("[DB CHECKPOINT] Snapshot com " + registros + " registros gravado");
         } catch (IOException e) {
+            LogDAO.addLog("[DB ERROR] Falha no checkpoint: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            checkpointPendente.set(false);
+        }
+    }
+
+
+    private void appendColumns(WeatherData weather) {
+        try {
+            columnStore.append(weather);
+        } catch (IOException e) {
+            LogDAO.addLog("[COLUMN ERROR] Falha ao gravar registro " + weather.getId() + " nas colunas: " + e.getMessage());
+        }
+    }
+
+
+    private void indexar(WeatherData weather) {
+        timeIndex.append(weather.getId(), weather.getTime().getTime());
+        if (weather.getMicrocontroller() != null) {
+            microcontrollerIndex.add(weather.getMicrocontroller(), weather.getId(), weather.getTime().getTime());
+        }
+    }
+
+
+    private static String encodeCursor(long tempo, int id) {
+        String cursor = tempo + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private static long[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            return new long[] { Long.parseLong(parts[0]), Integer.parseInt(parts[1]) };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+
+
+    private void rebuildIndexes() {
+        microcontrollerIndex.clear();
+        timeIndex.clear();
+        for (WeatherData weather : weatherTable) {
+            indexar(weather);
+        }
+    }
+
+
+    /**
+     * Completa as colunas com os registros que chegaram à tabela (snapshot + WAL)
+     * mas não às colunas, como numa queda entre as duas escritas ou na primeira execução.
+     */
+    private void syncColumnStore() {
+        int ultimoId = columnStore.isEmpty() ? 0 : columnStore.getId(columnStore.size() - 1);
+
+        int pendentes = 0;
+        for (WeatherData weather : weatherTable.aPartirDe(ultimoId + 1)) {
+            appendColumns(weather);
+            pendentes++;
+        }
+
+        if (pendentes > 0) {
+            LogDAO.addLog("[COLUMN SYNC] " + pendentes + " registros copiados para as colunas");
+        }
+    }
+
+
+    /**
+     * Grava o snapshot em blocos, no mesmo formato de registro do WAL,
+     * para que a carga seja apenas um replay do snapshot seguido do replay do WAL.
+     */
+    private long writeSnapshot() throws IOException {
+        try (SnapshotFile.Writer writer = SnapshotFile.create(new File(ARQUIVO), aes)) {
+            for (WeatherData weather : weatherTable.copiaPorBlocos()) {
+                writer.add(encodePut(weather));
+            }
+            return writer.commit();
+        }
+    }
+
+
+    private byte[] encodePut(WeatherData weather) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + WeatherCodec.encodedSize(weather));
+        buffer.put(OP_PUT);
+        WeatherCodec.write(weather, buffer);
+        return buffer.array();
+    }
+
+
+    private byte[] encodeDelete(int codigo) {
+        return new byte[] { OP_DELETE, (byte) (codigo >>> 24), (byte) (codigo >>> 16), (byte) (codigo >>> 8), (byte) codigo };
+    }
+
+
+    private byte[] encodeExpire(long tempo) {
+        byte[] registro = new byte[1 + Long.BYTES];
+        registro[0] = OP_EXPIRE;
+        for (int i = 0; i < Long.BYTES; i++) {
+            registro[1 + i] = (byte) (tempo >>> (56 - 8 * i));
+        }
+        return registro;
+    }
+
+
+    private boolean removerSeExistir(int id) {
+        try {
+            weatherTable.remover(id);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+
+    private void applyRegistro(byte[] registro) {
+        try {
+            if (registro[0] == OP_DELETE) {
+                int id = new DataInputStream(new ByteArrayInputStream(registro, 1, 4)).readInt();
+                removerSeExistir(id);
+            } else if (registro[0] == OP_EXPIRE) {
+                long tempo = new DataInputStream(new ByteArrayInputStream(registro, 1, Long.BYTES)).readLong();
+                int[] expirados = weatherTable.parallelStream()
+                        .filter(weather -> weather.getTime().getTime() < tempo)
+                        .mapToInt(WeatherData::getId)
+                        .toArray();
+                for (int id : expirados) {
+                    removerSeExistir(id);
+                }
+            } else if (registro[0] == OP_PUT) {
+                WeatherData weather = WeatherCodec.decode(registro, 1, registro.length - 1);
+                weatherTable.inserir(weather.getId(), weather);
+            } else if (registro[0] == CABECALHO_SERIALIZACAO_JAVA) {
+                // Registros gravados antes do codec binário: ObjectOutputStream com o byte da operação e o objeto
+                ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(registro));
+                objectIn.readByte();
+                WeatherData weather = (WeatherData) objectIn.readObject();
+                weatherTable.inserir(weather.getId(), weather);
+            } else {
+                LogDAO.addLog("[WAL ERROR] Operação desconhecida no registro: " + registro[0]);
+            }
+        } catch (Exception e) {
+            LogDAO.addLog("[WAL ERROR] Registro inválido ignorado durante o replay: " + e.getMessage());
         }
     }
     
 
-    @SuppressWarnings("unchecked")
     public void loadDiskDatabase() {
-        // Carregar arquivo binário "database.dat" e preencher Hash com as OSs
+        // Carregar o último snapshot "database.dat" e reaplicar o WAL por cima dele
+        long inicio = System.currentTimeMillis();
+        File file = new File(ARQUIVO);
+
         try {
-            File file = new File(ARQUIVO);
-            if (!file.exists()) {
-                file.createNewFile();
+            if (SnapshotFile.isSnapshot(file)) {
+                long registros = SnapshotFile.read(file, aes, this::applyRegistro);
+                LogDAO.addLog("[DB LOAD] Snapshot com " + registros + " registros carregado");
+            } else if (file.length() > 0) {
+                loadLegacyDatabase(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Falha ao ler o snapshot do banco de dados de clima: " + e.getMessage());
+            LogDAO.addLog("[DB ERROR] Snapshot ilegível, seguindo apenas com o WAL: " + e.getMessage());
+            weatherTable = new WeatherTable();
+        }
+
+        wal.replay(this::applyRegistro);
+        LogDAO.addLog("[DB LOAD] Base de clima carregada em " + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+
+    /**
+     * Formatos antigos: a Hash inteira ou um WeatherData[] serializados e criptografados de uma vez.
+     * O próximo checkpoint regrava o arquivo no formato em blocos.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadLegacyDatabase(File file) throws IOException {
+        byte[] decryptedData = aes.decrypt(Files.readAllBytes(file.toPath()));
+        if (decryptedData == null) {
+            // Fallback or error handling if decryption fails (e.g. wrong key or corrupted file)
+            System.err.println("Falha ao descriptografar o banco de dados de clima.");
+            return;
+        }
+
+        try (ObjectInputStream objectIn = new com.wind.datastructures.legacy.Hash.InputStream(new ByteArrayInputStream(decryptedData))) {
+            Object conteudo = objectIn.readObject();
+            if (conteudo instanceof com.wind.datastructures.legacy.Hash) {
+                for (WeatherData weather : ((com.wind.datastructures.legacy.Hash<WeatherData>) conteudo).getAll()) {
+                    weatherTable.inserir(weather.getId(), weather);
+                }
             } else {
-                FileInputStream fileIn = new FileInputStream(ARQUIVO);
-                byte[] fileContent = fileIn.readAllBytes();
-                fileIn.close();
-                
-                if (fileContent.length > 0) {
-                    byte[] decryptedData = aes.decrypt(fileContent);
-                    if (decryptedData != null) {
-                        ByteArrayInputStream bais = new ByteArrayInputStream(decryptedData);
-                        ObjectInputStream objectIn = new ObjectInputStream(bais);
-                        weatherDataHash = (Hash<WeatherData>) objectIn.readObject();
-                        objectIn.close();
-                    } else {
-                        // Fallback or error handling if decryption fails (e.g. wrong key or corrupted file)
-                        System.err.println("Falha ao descriptografar o banco de dados de clima.");
-                        weatherDataHash = new Hash<>(TAMANHO_INICIAL);
-                    }
+                for (WeatherData weather : (WeatherData[]) conteudo) {
+                    weatherTable.inserir(weather.getId(), weather);
                 }
             }
-        } catch (IOException e) {
-            // Se o arquivo estiver vazio, criar uma nova HashTable
-            weatherDataHash = new Hash<>(TAMANHO_INICIAL);
         } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            throw new IOException(e);
         }
     }
 
 
+    public void close() {
+        checkpointExecutor.shutdown();
+        wal.close();
+        columnStore.force();
+    }
+
+
     public boolean isEmpty() {
         return ocupacao == 0;
     }
 
+    public WeatherColumnStore getColumnStore() {
+        return columnStore;
+    }
+
+    /**
+     * Registro mais recente da tabela (maior id), em tempo constante.
+     */
     public WeatherData getUltimo() {
-        return weatherDataHash.getUltimo();
+        return weatherTable.getUltimo();
+    }
+
+    /**
+     * Registro mais recente de um dispositivo: o último dos seus postings, que já estão em ordem de chegada.
+     * Postings de registros apagados são pulados, então normalmente custa uma única busca na tabela.
+     * @return O registro, ou null se o dispositivo não tem dados.
+     */
+    public WeatherData getUltimo(MicrocontrollerEntity microcontroller) {
+        TimePostings lista = microcontrollerIndex.get(microcontroller);
+        if (lista == null) {
+            return null;
+        }
+
+        TimePostings.Snapshot postings = lista.snapshot();
+        for (int i = postings.size() - 1; i >= 0; i--) {
+            WeatherData weather = weatherTable.buscar(postings.getId(i));
+            if (weather != null) {
+                return weather;
+            }
+        }
+        return null;
     }
 
     public int getOcupacao() {
@@ -178,6 +605,6 @@ public class WeatherDataDAO {
     }
 
     public int getTamanho() {
-        return weatherDataHash.getTamanho();
+        return weatherTable.getTamanho();
     }
 }
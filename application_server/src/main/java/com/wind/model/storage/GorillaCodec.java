@@ -0,0 +1,366 @@
+package com.wind.model.storage;
+
+import java.util.Arrays;
+
+/**
+ * Compressão de blocos de leituras no estilo Gorilla.
+ * Tempos usam delta-of-delta e métricas usam XOR com o valor anterior, ambos por dispositivo,
+ * já que cada sensor muda pouco entre duas amostras. Ids e a sequência de dispositivos
+ * ficam na ordem original das linhas, para que o bloco decodificado volte exatamente igual.
+ *
+ * Formato: [linhas:32][dispositivos distintos:16][código de cada dispositivo:32...]
+ * [dispositivo de cada linha: log2(distintos) bits] [ids: delta-of-delta na ordem das linhas]
+ * e, para cada dispositivo, [tempos: delta-of-delta] seguidos das 4 métricas em XOR.
+ */
+public final class GorillaCodec {
+
+    private GorillaCodec() {
+    }
+
+    /**
+     * Linhas de um bloco decodificado, na ordem original.
+     */
+    public static class Bloco {
+        public final int linhas;
+        public final int[] ids;
+        public final long[] tempos;
+        public final int[] dispositivos;
+        public final float[][] metricas;
+
+        Bloco(int linhas, int nMetricas) {
+            this.linhas = linhas;
+            this.ids = new int[linhas];
+            this.tempos = new long[linhas];
+            this.dispositivos = new int[linhas];
+            this.metricas = new float[nMetricas][linhas];
+        }
+    }
+
+    public static byte[] encode(int[] ids, long[] tempos, int[] dispositivos, float[][] metricas, int linhas) {
+        BitWriter out = new BitWriter(linhas * 12 + 64);
+
+        // Dicionário local de dispositivos, na ordem da primeira aparição
+        int[] locais = new int[linhas];
+        int[] codigos = new int[Math.min(linhas, 1 << 16)];
+        int distintos = 0;
+        for (int i = 0; i < linhas; i++) {
+            int local = indexOf(codigos, distintos, dispositivos[i]);
+            if (local < 0) {
+                local = distintos;
+                codigos[distintos++] = dispositivos[i];
+            }
+            locais[i] = local;
+        }
+
+        out.write(linhas, 32);
+        out.write(distintos, 16);
+        for (int d = 0; d < distintos; d++) {
+            out.write(codigos[d], 32);
+        }
+
+        int bitsDispositivo = bitsPara(distintos);
+        for (int i = 0; i < linhas; i++) {
+            out.write(locais[i], bitsDispositivo);
+        }
+
+        DeltaOfDelta idsEncoder = new DeltaOfDelta();
+        for (int i = 0; i < linhas; i++) {
+            idsEncoder.encode(out, ids[i], i == 0);
+        }
+
+        int[] linhasPorDispositivo = ordenarPorDispositivo(locais, distintos, linhas);
+        int[] inicio = inicios(locais, distintos, linhas);
+
+        for (int d = 0; d < distintos; d++) {
+            int de = inicio[d];
+            int ate = inicio[d + 1];
+
+            DeltaOfDelta temposEncoder = new DeltaOfDelta();
+            for (int k = de; k < ate; k++) {
+                temposEncoder.encode(out, tempos[linhasPorDispositivo[k]], k == de);
+            }
+
+            for (float[] coluna : metricas) {
+                XorFloat metricaEncoder = new XorFloat();
+                for (int k = de; k < ate; k++) {
+                    metricaEncoder.encode(out, Float.floatToRawIntBits(coluna[linhasPorDispositivo[k]]), k == de);
+                }
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    public static Bloco decode(byte[] dados, int nMetricas) {
+        BitReader in = new BitReader(dados);
+
+        int linhas = (int) in.read(32);
+        int distintos = (int) in.read(16);
+        int[] codigos = new int[distintos];
+        for (int d = 0; d < distintos; d++) {
+            codigos[d] = (int) in.read(32);
+        }
+
+        Bloco bloco = new Bloco(linhas, nMetricas);
+
+        int[] locais = new int[linhas];
+        int bitsDispositivo = bitsPara(distintos);
+        for (int i = 0; i < linhas; i++) {
+            locais[i] = (int) in.read(bitsDispositivo);
+            bloco.dispositivos[i] = codigos[locais[i]];
+        }
+
+        DeltaOfDelta idsDecoder = new DeltaOfDelta();
+        for (int i = 0; i < linhas; i++) {
+            bloco.ids[i] = (int) idsDecoder.decode(in, i == 0);
+        }
+
+        int[] linhasPorDispositivo = ordenarPorDispositivo(locais, distintos, linhas);
+        int[] inicio = inicios(locais, distintos, linhas);
+
+        for (int d = 0; d < distintos; d++) {
+            int de = inicio[d];
+            int ate = inicio[d + 1];
+
+            DeltaOfDelta temposDecoder = new DeltaOfDelta();
+            for (int k = de; k < ate; k++) {
+                bloco.tempos[linhasPorDispositivo[k]] = temposDecoder.decode(in, k == de);
+            }
+
+            for (int m = 0; m < nMetricas; m++) {
+                float[] coluna = bloco.metricas[m];
+                XorFloat metricaDecoder = new XorFloat();
+                for (int k = de; k < ate; k++) {
+                    coluna[linhasPorDispositivo[k]] = Float.intBitsToFloat(metricaDecoder.decode(in, k == de));
+                }
+            }
+        }
+
+        return bloco;
+    }
+
+    /**
+     * Delta-of-delta com faixas de tamanho variável: '0' para delta repetido,
+     * '10' + 7 bits, '110' + 9 bits, '1110' + 12 bits e '1111' + 64 bits para o resto.
+     */
+    private static class DeltaOfDelta {
+        private long anterior;
+        private long deltaAnterior;
+
+        void encode(BitWriter out, long valor, boolean primeiro) {
+            if (primeiro) {
+                out.write(valor, 64);
+                anterior = valor;
+                deltaAnterior = 0;
+                return;
+            }
+
+            long delta = valor - anterior;
+            long dod = delta - deltaAnterior;
+
+            if (dod == 0) {
+                out.write(0b0, 1);
+            } else if (dod >= -63 && dod <= 64) {
+                out.write(0b10, 2);
+                out.write(dod + 63, 7);
+            } else if (dod >= -255 && dod <= 256) {
+                out.write(0b110, 3);
+                out.write(dod + 255, 9);
+            } else if (dod >= -2047 && dod <= 2048) {
+                out.write(0b1110, 4);
+                out.write(dod + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(dod, 64);
+            }
+
+            anterior = valor;
+            deltaAnterior = delta;
+        }
+
+        long decode(BitReader in, boolean primeiro) {
+            if (primeiro) {
+                anterior = in.read(64);
+                deltaAnterior = 0;
+                return anterior;
+            }
+
+            long dod;
+            if (in.read(1) == 0) {
+                dod = 0;
+            } else if (in.read(1) == 0) {
+                dod = in.read(7) - 63;
+            } else if (in.read(1) == 0) {
+                dod = in.read(9) - 255;
+            } else if (in.read(1) == 0) {
+                dod = in.read(12) - 2047;
+            } else {
+                dod = in.read(64);
+            }
+
+            deltaAnterior += dod;
+            anterior += deltaAnterior;
+            return anterior;
+        }
+    }
+
+    /**
+     * XOR com o valor anterior: '0' se igual; '10' + bits significativos se cabem na janela anterior;
+     * '11' + 5 bits de zeros à esquerda + 5 bits de tamanho + bits significativos caso contrário.
+     */
+    private static class XorFloat {
+        private int anterior;
+        private int zerosEsquerda = -1;
+        private int zerosDireita;
+
+        void encode(BitWriter out, int bits, boolean primeiro) {
+            if (primeiro) {
+                out.write(bits & 0xFFFFFFFFL, 32);
+                anterior = bits;
+                zerosEsquerda = -1;
+                return;
+            }
+
+            int xor = bits ^ anterior;
+            anterior = bits;
+
+            if (xor == 0) {
+                out.write(0b0, 1);
+                return;
+            }
+
+            int esquerda = Integer.numberOfLeadingZeros(xor);
+            int direita = Integer.numberOfTrailingZeros(xor);
+
+            if (zerosEsquerda >= 0 && esquerda >= zerosEsquerda && direita >= zerosDireita) {
+                out.write(0b10, 2);
+                out.write((xor >>> zerosDireita) & mascara(32 - zerosEsquerda - zerosDireita), 32 - zerosEsquerda - zerosDireita);
+            } else {
+                int significativos = 32 - esquerda - direita;
+                out.write(0b11, 2);
+                out.write(esquerda, 5);
+                out.write(significativos - 1, 5);
+                out.write((xor >>> direita) & mascara(significativos), significativos);
+                zerosEsquerda = esquerda;
+                zerosDireita = direita;
+            }
+        }
+
+        int decode(BitReader in, boolean primeiro) {
+            if (primeiro) {
+                anterior = (int) in.read(32);
+                return anterior;
+            }
+
+            if (in.read(1) == 0) {
+                return anterior;
+            }
+
+            if (in.read(1) == 1) {
+                zerosEsquerda = (int) in.read(5);
+                int significativos = (int) in.read(5) + 1;
+                zerosDireita = 32 - zerosEsquerda - significativos;
+            }
+
+            int significativos = 32 - zerosEsquerda - zerosDireita;
+            int xor = (int) in.read(significativos) << zerosDireita;
+            anterior ^= xor;
+            return anterior;
+        }
+
+        private static long mascara(int bits) {
+            return bits == 64 ? -1L : (1L << bits) - 1;
+        }
+    }
+
+    private static class BitWriter {
+        private byte[] buffer;
+        private int posicao; // em bits
+
+        BitWriter(int capacidade) {
+            buffer = new byte[Math.max(16, capacidade)];
+        }
+
+        void write(long valor, int bits) {
+            if (bits == 0) {
+                return;
+            }
+            if (((posicao + bits) >>> 3) + 1 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2 + 16);
+            }
+
+            for (int restantes = bits; restantes > 0; ) {
+                int byteAtual = posicao >>> 3;
+                int livres = 8 - (posicao & 7);
+                int escrever = Math.min(livres, restantes);
+                int pedaco = (int) (valor >>> (restantes - escrever)) & ((1 << escrever) - 1);
+                buffer[byteAtual] |= (byte) (pedaco << (livres - escrever));
+                posicao += escrever;
+                restantes -= escrever;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, (posicao + 7) >>> 3);
+        }
+    }
+
+    private static class BitReader {
+        private final byte[] buffer;
+        private int posicao;
+
+        BitReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        long read(int bits) {
+            long valor = 0;
+            for (int restantes = bits; restantes > 0; ) {
+                int byteAtual = buffer[posicao >>> 3] & 0xFF;
+                int disponiveis = 8 - (posicao & 7);
+                int ler = Math.min(disponiveis, restantes);
+                int pedaco = (byteAtual >>> (disponiveis - ler)) & ((1 << ler) - 1);
+                valor = (valor << ler) | pedaco;
+                posicao += ler;
+                restantes -= ler;
+            }
+            return valor;
+        }
+    }
+
+    private static int indexOf(int[] codigos, int tamanho, int codigo) {
+        for (int i = tamanho - 1; i >= 0; i--) {
+            if (codigos[i] == codigo) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int bitsPara(int distintos) {
+        return distintos <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(distintos - 1);
+    }
+
+    private static int[] inicios(int[] locais, int distintos, int linhas) {
+        int[] inicio = new int[distintos + 1];
+        for (int i = 0; i < linhas; i++) {
+            inicio[locais[i] + 1]++;
+        }
+        for (int d = 0; d < distintos; d++) {
+            inicio[d + 1] += inicio[d];
+        }
+        return inicio;
+    }
+
+    /**
+     * Linhas agrupadas por dispositivo, mantendo a ordem original dentro de cada grupo.
+     */
+    private static int[] ordenarPorDispositivo(int[] locais, int distintos, int linhas) {
+        int[] proximo = inicios(locais, distintos, linhas);
+        int[] ordem = new int[linhas];
+        for (int i = 0; i < linhas; i++) {
+            ordem[proximo[locais[i]]++] = i;
+        }
+        return ordem;
+    }
+}
@@ -0,0 +1,185 @@
+package com.wind.model.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+import com.wind.security.AES;
+import com.wind.security.Util;
+
+/**
+ * Snapshot gravado em blocos criptografados independentes: [mágico][versão] seguido de
+ * blocos [tamanho][crc32][IV + dados cifrados], cada um com vários registros [tamanho][bytes].
+ * A gravação e a leitura trabalham um bloco por vez, então o pico de memória não depende
+ * do tamanho da base, e a carga pode começar a aplicar registros antes de terminar o arquivo.
+ */
+public class SnapshotFile {
+    private static final int MAGICO = 0x574E5350; // "WNSP"
+    private static final int VERSAO = 1;
+    private static final int BYTES_POR_BLOCO = 1 << 20;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Diz se o arquivo está no formato em blocos; arquivos antigos (um único objeto cifrado) retornam false.
+     */
+    public static boolean isSnapshot(File arquivo) {
+        if (arquivo.length() < Integer.BYTES * 2) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(arquivo))) {
+            return in.readInt() == MAGICO;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lê o snapshot bloco a bloco, entregando cada registro em ordem.
+     * @return Quantos registros foram lidos.
+     */
+    public static long read(File arquivo, AES aes, Consumer<byte[]> consumidor) throws IOException {
+        long registros = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivo), 1 << 16))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("Arquivo não é um snapshot: " + arquivo.getName());
+            }
+
+            int versao = in.readInt();
+            if (versao != VERSAO) {
+                throw new IOException("Versão de snapshot não suportada: " + versao);
+            }
+
+            while (true) {
+                int tamanho;
+                try {
+                    tamanho = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                long crc = in.readLong();
+                byte[] cifrado = new byte[tamanho];
+                in.readFully(cifrado);
+
+                if (Util.calculateCRC32(cifrado) != crc) {
+                    throw new IOException("CRC inválido no snapshot " + arquivo.getName());
+                }
+
+                byte[] bloco = aes.decrypt(cifrado);
+                if (bloco == null) {
+                    throw new IOException("Falha ao descriptografar bloco do snapshot " + arquivo.getName());
+                }
+
+                DataInputStream registrosIn = new DataInputStream(new ByteArrayInputStream(bloco));
+                while (registrosIn.available() > 0) {
+                    byte[] registro = new byte[registrosIn.readInt()];
+                    registrosIn.readFully(registro);
+                    consumidor.accept(registro);
+                    registros++;
+                }
+            }
+        }
+
+        return registros;
+    }
+
+    public static Writer create(File destino, AES aes) throws IOException {
+        return new Writer(destino, aes);
+    }
+
+    /**
+     * Grava num arquivo temporário e só troca pelo definitivo em {@link #commit()},
+     * de forma atômica, para nunca deixar um snapshot pela metade.
+     */
+    public static class Writer implements Closeable {
+        private final File destino;
+        private final File temporario;
+        private final AES aes;
+        private final FileOutputStream arquivo;
+        private final DataOutputStream out;
+
+        private final ByteArrayOutputStream bloco = new ByteArrayOutputStream(BYTES_POR_BLOCO + 4096);
+        private final DataOutputStream blocoOut = new DataOutputStream(bloco);
+        private long registros;
+        private boolean concluido;
+
+        private Writer(File destino, AES aes) throws IOException {
+            this.destino = destino;
+            this.temporario = new File(destino.getPath() + ".tmp");
+            this.aes = aes;
+            this.arquivo = new FileOutputStream(temporario);
+            this.out = new DataOutputStream(new BufferedOutputStream(arquivo, 1 << 16));
+
+            out.writeInt(MAGICO);
+            out.writeInt(VERSAO);
+        }
+
+        public void add(byte[] registro) throws IOException {
+            blocoOut.writeInt(registro.length);
+            blocoOut.write(registro);
+            registros++;
+
+            if (bloco.size() >= BYTES_POR_BLOCO) {
+                gravarBloco();
+            }
+        }
+
+        public long commit() throws IOException {
+            gravarBloco();
+            out.flush();
+            arquivo.getFD().sync();
+            out.close();
+            concluido = true;
+
+            Files.move(temporario.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return registros;
+        }
+
+        /**
+         * Sem {@link #commit()} antes, descarta o arquivo temporário e mantém o snapshot anterior.
+         */
+        @Override
+        public void close() {
+            if (!concluido) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Já vai ser descartado
+                }
+                temporario.delete();
+            }
+        }
+
+        private void gravarBloco() throws IOException {
+            if (bloco.size() == 0) {
+                return;
+            }
+
+            byte[] cifrado = aes.encrypt(bloco.toByteArray());
+            if (cifrado == null) {
+                throw new IOException("Falha ao criptografar bloco do snapshot");
+            }
+
+            out.writeInt(cifrado.length);
+            out.writeLong(Util.calculateCRC32(cifrado));
+            out.write(cifrado);
+            bloco.reset();
+        }
+    }
+}
@@ -0,0 +1,722 @@
+package com.wind.model.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.wind.entities.MicrocontrollerEntity;
+import com.wind.entities.WeatherData;
+import com.wind.model.DAO.LogDAO;
+
+/**
+ * Armazenamento colunar das leituras climáticas em arquivos mapeados em memória.
+ * Cada coluna (id, tempo, dispositivo, pressão, radiação, temperatura e umidade) fica em
+ * arquivos próprios divididos em chunks de tamanho fixo, então varreduras leem primitivos
+ * direto do page cache sem criar um objeto por linha.
+ * As linhas são gravadas em ordem de chegada, o que mantém a coluna de tempo ordenada.
+ * Quando um chunk enche ele é selado: as sete colunas viram um único arquivo comprimido
+ * com {@link GorillaCodec}, em blocos de {@code LINHAS_POR_BLOCO} linhas que são
+ * descomprimidos sob demanda durante as varreduras.
+ */
+public class WeatherColumnStore {
+    public static final int PRESSURE = 0;
+    public static final int RADIATION = 1;
+    public static final int TEMPERATURE = 2;
+    public static final int HUMIDITY = 3;
+    public static final int METRICAS = 4;
+
+    private static final int LINHAS_POR_CHUNK = 1 << 20;
+    private static final String ARQUIVO_META = "rows.meta";
+    private static final String ARQUIVO_DISPOSITIVOS = "devices.dict";
+    private static final int LINHAS_POR_BLOCO = 4096;
+    private static final int MAGICO_SELADO = 0x574E475A; // "WNGZ"
+    private static final int VERSAO_SELADO = 1;
+
+    private final File diretorio;
+    private final Column id;
+    private final Column time;
+    private final Column device;
+    private final Column[] metricas;
+    private final Column[] colunas;
+    private final MappedByteBuffer meta;
+
+    // Dicionário de dispositivos: (id do microcontrolador, região) -> código da coluna "device"
+    private final Map<String, Integer> codigos = new ConcurrentHashMap<>();
+    private final List<MicrocontrollerEntity> dispositivos = new CopyOnWriteArrayList<>();
+
+    private volatile long primeiraLinha;
+    private volatile long linhas;
+
+    // Leituras seguram o lado de leitura enquanto percorrem as linhas; chunks descartados ou já selados
+    // só deixam de ser referenciados com o lado de escrita, depois que as leituras em andamento terminam
+    private final ReentrantReadWriteLock travaLeitura = new ReentrantReadWriteLock();
+
+    // Chunks já comprimidos; têm prioridade sobre as colunas brutas do mesmo índice
+    private volatile SealedChunk[] selados = new SealedChunk[0];
+    private final ExecutorService selador = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Column-Seal-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Chunk selado mapeado só para leitura: [mágico][versão][linhas][blocos][offsets dos blocos] e os blocos.
+     */
+    private static class SealedChunk {
+        final MappedByteBuffer dados;
+        final long[] offsets;
+        // Último bloco descomprimido; varreduras sequenciais quase sempre acertam aqui
+        volatile BlocoEmCache cache = new BlocoEmCache(-1, null);
+
+        SealedChunk(File arquivo) throws IOException {
+            try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+                dados = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            }
+
+            if (dados.getInt(0) != MAGICO_SELADO || dados.getInt(Integer.BYTES) != VERSAO_SELADO) {
+                throw new IOException("Chunk selado inválido: " + arquivo.getName());
+            }
+
+            int blocos = dados.getInt(3 * Integer.BYTES);
+            offsets = new long[blocos + 1];
+            for (int i = 0; i <= blocos; i++) {
+                offsets[i] = dados.getLong(4 * Integer.BYTES + i * Long.BYTES);
+            }
+        }
+
+        GorillaCodec.Bloco bloco(long linha) {
+            int indice = (int) (linha % LINHAS_POR_CHUNK) / LINHAS_POR_BLOCO;
+            BlocoEmCache atual = cache;
+            if (atual.indice == indice) {
+                return atual.bloco;
+            }
+
+            byte[] comprimido = new byte[(int) (offsets[indice + 1] - offsets[indice])];
+            dados.get((int) offsets[indice], comprimido);
+            GorillaCodec.Bloco bloco = GorillaCodec.decode(comprimido, METRICAS);
+            cache = new BlocoEmCache(indice, bloco);
+            return bloco;
+        }
+    }
+
+    private static final class BlocoEmCache {
+        final int indice;
+        final GorillaCodec.Bloco bloco;
+
+        BlocoEmCache(int indice, GorillaCodec.Bloco bloco) {
+            this.indice = indice;
+            this.bloco = bloco;
+        }
+    }
+
+    /**
+     * Recebe uma linha de {@link #forEachRow(long, RowVisitor)}; {@code valores} é reaproveitado entre chamadas.
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(long tempo, int dispositivo, float[] valores);
+    }
+
+    private class Column {
+        final String nome;
+        final int largura;
+        volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+        Column(String nome, int largura) {
+            this.nome = nome;
+            this.largura = largura;
+        }
+
+        MappedByteBuffer chunk(long linha) {
+            return chunks[(int) (linha / LINHAS_POR_CHUNK)];
+        }
+
+        int offset(long linha) {
+            return (int) (linha % LINHAS_POR_CHUNK) * largura;
+        }
+
+        File arquivo(int indice) {
+            return new File(diretorio, String.format("%s-%06d.col", nome, indice));
+        }
+
+        void liberarChunk(int indice) {
+            MappedByteBuffer[] novos = chunks.clone();
+            novos[indice] = null;
+            chunks = novos;
+        }
+
+        void garantirChunk(int indice) throws IOException {
+            if (indice < chunks.length && chunks[indice] != null) {
+                return;
+            }
+
+            try (FileChannel canal = FileChannel.open(arquivo(indice).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_WRITE, 0, (long) LINHAS_POR_CHUNK * largura);
+
+                MappedByteBuffer[] novos = Arrays.copyOf(chunks, Math.max(chunks.length, indice + 1));
+                novos[indice] = buffer;
+                chunks = novos;
+            }
+        }
+    }
+
+    public WeatherColumnStore(String diretorio) throws IOException {
+        this.diretorio = new File(diretorio);
+        if (!this.diretorio.exists()) {
+            this.diretorio.mkdirs();
+        }
+
+        id = new Column("id", Integer.BYTES);
+        time = new Column("time", Long.BYTES);
+        device = new Column("device", Integer.BYTES);
+        metricas = new Column[] {
+            new Column("pressure", Float.BYTES),
+            new Column("radiation", Float.BYTES),
+            new Column("temperature", Float.BYTES),
+            new Column("humidity", Float.BYTES)
+        };
+        colunas = new Column[] { id, time, device, metricas[0], metricas[1], metricas[2], metricas[3] };
+
+        try (FileChannel canal = FileChannel.open(new File(this.diretorio, ARQUIVO_META).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            meta = canal.map(FileChannel.MapMode.READ_WRITE, 0, 2 * Long.BYTES);
+        }
+        primeiraLinha = meta.getLong(0);
+        linhas = meta.getLong(Long.BYTES);
+
+        for (long chunk = primeiraLinha / LINHAS_POR_CHUNK; chunk * LINHAS_POR_CHUNK < linhas; chunk++) {
+            int indice = (int) chunk;
+            if (arquivoSelado(indice).exists()) {
+                definirSelado(indice, new SealedChunk(arquivoSelado(indice)));
+                // Uma queda logo depois de selar pode ter deixado as colunas brutas para trás
+                for (Column coluna : colunas) {
+                    coluna.arquivo(indice).delete();
+                }
+                continue;
+            }
+
+            for (Column coluna : colunas) {
+                coluna.garantirChunk(indice);
+            }
+            if ((chunk + 1) * LINHAS_POR_CHUNK <= linhas) {
+                selador.submit(() -> selar(indice));
+            }
+        }
+
+        loadDispositivos();
+    }
+
+    /**
+     * Acrescenta uma leitura ao fim das colunas. O contador de linhas só é
+     * atualizado depois que todos os valores foram escritos.
+     */
+    public synchronized void append(WeatherData weather) throws IOException {
+        long linha = linhas;
+        if (linha % LINHAS_POR_CHUNK == 0) {
+            int indice = (int) (linha / LINHAS_POR_CHUNK);
+            for (Column coluna : colunas) {
+                coluna.garantirChunk(indice);
+            }
+            if (indice > 0) {
+                selador.submit(() -> selar(indice - 1));
+            }
+        }
+
+        int offset = (int) (linha % LINHAS_POR_CHUNK);
+        id.chunk(linha).putInt(offset * Integer.BYTES, weather.getId());
+        time.chunk(linha).putLong(offset * Long.BYTES, weather.getTime().getTime());
+        device.chunk(linha).putInt(offset * Integer.BYTES, codigoDispositivo(weather.getMicrocontroller()));
+        metricas[PRESSURE].chunk(linha).putFloat(offset * Float.BYTES, weather.getPressure());
+        metricas[RADIATION].chunk(linha).putFloat(offset * Float.BYTES, weather.getRadiation());
+        metricas[TEMPERATURE].chunk(linha).putFloat(offset * Float.BYTES, weather.getTemperature());
+        metricas[HUMIDITY].chunk(linha).putFloat(offset * Float.BYTES, weather.getHumidity());
+
+        linhas = linha + 1;
+        meta.putLong(Long.BYTES, linhas);
+    }
+
+    /**
+     * Descarta os chunks inteiros cujas linhas têm todas tempo menor que {@code tempo}.
+     * Linhas antigas que dividem o chunk com linhas mais novas permanecem até a próxima poda.
+     * @return Quantas linhas foram descartadas.
+     */
+    public long dropBefore(long tempo) {
+        List<Runnable> liberacoes = new ArrayList<>();
+        long descartadas;
+        // Sempre a trava de leitura antes do monitor, nunca o contrário, como em liberar()
+        travaLeitura.readLock().lock();
+        try {
+            synchronized (this) {
+                descartadas = descartarChunks(tempo, liberacoes);
+            }
+        } finally {
+            travaLeitura.readLock().unlock();
+        }
+        liberar(liberacoes);
+        return descartadas;
+    }
+
+    private long descartarChunks(long tempo, List<Runnable> liberacoes) {
+        long primeiroChunk = primeiraLinha / LINHAS_POR_CHUNK;
+        long primeiroChunkMantido = procurarTempo(tempo) / LINHAS_POR_CHUNK;
+        if (primeiroChunkMantido <= primeiroChunk) {
+            return 0;
+        }
+
+        long anterior = primeiraLinha;
+        primeiraLinha = primeiroChunkMantido * LINHAS_POR_CHUNK;
+        meta.putLong(0, primeiraLinha);
+
+        for (long chunk = primeiroChunk; chunk < primeiroChunkMantido; chunk++) {
+            int indice = (int) chunk;
+            if (selado(indice) != null) {
+                if (!arquivoSelado(indice).delete()) {
+                    LogDAO.addLog("[COLUMN ERROR] Não foi possível remover " + arquivoSelado(indice).getName());
+                }
+                liberacoes.add(() -> definirSelado(indice, null));
+                continue;
+            }
+
+            for (Column coluna : colunas) {
+                if (!coluna.arquivo(indice).delete()) {
+                    LogDAO.addLog("[COLUMN ERROR] Não foi possível remover " + coluna.arquivo(indice).getName());
+                }
+                liberacoes.add(() -> coluna.liberarChunk(indice));
+            }
+        }
+
+        return primeiraLinha - anterior;
+    }
+
+    /**
+     * Solta as referências aos chunks só quando nenhuma leitura está em andamento.
+     * O monitor também é preciso porque append() troca os mesmos arrays de chunks.
+     */
+    private void liberar(List<Runnable> liberacoes) {
+        if (liberacoes.isEmpty()) {
+            return;
+        }
+
+        travaLeitura.writeLock().lock();
+        try {
+            synchronized (this) {
+                for (Runnable liberacao : liberacoes) {
+                    liberacao.run();
+                }
+            }
+        } finally {
+            travaLeitura.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        return linhas;
+    }
+
+    public boolean isEmpty() {
+        return linhas == primeiraLinha;
+    }
+
+    public int getId(long linha) {
+        travaLeitura.readLock().lock();
+        try {
+            return lerId(linha);
+        } finally {
+            travaLeitura.readLock().unlock();
+        }
+    }
+
+    public long getTime(long linha) {
+        travaLeitura.readLock().lock();
+        try {
+            return lerTempo(linha);
+        } finally {
+            travaLeitura.readLock().unlock();
+        }
+    }
+
+    private int lerId(long linha) {
+        GorillaCodec.Bloco bloco = blocoSelado(linha);
+        if (bloco != null) {
+            return bloco.ids[posicaoNoBloco(linha)];
+        }
+        return id.chunk(linha).getInt(id.offset(linha));
+    }
+
+    private long lerTempo(long linha) {
+        GorillaCodec.Bloco bloco = blocoSelado(linha);
+        if (bloco != null) {
+            return bloco.tempos[posicaoNoBloco(linha)];
+        }
+        return time.chunk(linha).getLong(time.offset(linha));
+    }
+
+    private int lerDispositivo(long linha) {
+        GorillaCodec.Bloco bloco = blocoSelado(linha);
+        if (bloco != null) {
+            return bloco.dispositivos[posicaoNoBloco(linha)];
+        }
+        return device.chunk(linha).getInt(device.offset(linha));
+    }
+
+    private float lerMetrica(int metrica, long linha) {
+        GorillaCodec.Bloco bloco = blocoSelado(linha);
+        if (bloco != null) {
+            return bloco.metricas[metrica][posicaoNoBloco(linha)];
+        }
+        Column coluna = metricas[metrica];
+        return coluna.chunk(linha).getFloat(coluna.offset(linha));
+    }
+
+    /**
+     * @return O código do dispositivo na coluna "device", ou -1 se ele nunca enviou dados.
+     */
+    public int findDevice(MicrocontrollerEntity microcontroller) {
+        Integer codigo = codigos.get(chaveDispositivo(microcontroller.getId(), microcontroller.getRegion()));
+        return codigo != null ? codigo : -1;
+    }
+
+    /**
+     * Códigos de todos os dispositivos da região, como máscara indexada pelo código.
+     */
+    public boolean[] findDevices(String region) {
+        boolean[] mascara = new boolean[dispositivos.size()];
+        for (int codigo = 0; codigo < mascara.length; codigo++) {
+            if (region.equals(dispositivos.get(codigo).getRegion())) {
+                mascara[codigo] = true;
+            }
+        }
+        return mascara;
+    }
+
+    public MicrocontrollerEntity getDeviceEntity(int codigo) {
+        return dispositivos.get(codigo);
+    }
+
+    /**
+     * Primeira linha cujo tempo é maior ou igual a {@code timeMillis} (busca binária na coluna de tempo).
+     */
+    public long lowerBound(long timeMillis) {
+        travaLeitura.readLock().lock();
+        try {
+            return procurarTempo(timeMillis);
+        } finally {
+            travaLeitura.readLock().unlock();
+        }
+    }
+
+    private long procurarTempo(long timeMillis) {
+        long inicio = primeiraLinha;
+        long fim = linhas;
+
+        while (inicio < fim) {
+            long meio = (inicio + fim) >>> 1;
+            if (lerTempo(meio) < timeMillis) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+
+        return inicio;
+    }
+
+    /**
+     * Percorre as linhas com tempo maior ou igual a {@code de}, em ordem, lendo só as colunas primitivas.
+     * @return Quantas linhas foram visitadas.
+     */
+    public long forEachRow(long de, RowVisitor visitante) {
+        float[] valores = new float[METRICAS];
+        travaLeitura.readLock().lock();
+        try {
+            long fim = linhas;
+            long linha = procurarTempo(de);
+            long visitadas = fim - linha;
+            for (; linha < fim; linha++) {
+                for (int metrica = 0; metrica < METRICAS; metrica++) {
+                    valores[metrica] = lerMetrica(metrica, linha);
+                }
+                visitante.visit(lerTempo(linha), lerDispositivo(linha), valores);
+            }
+            return visitadas;
+        } finally {
+            travaLeitura.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega as linhas com tempo em [de, ate) lendo só as colunas primitivas.
+     * @param dispositivos Máscara dos códigos de dispositivo a incluir, ou null para todos.
+     */
+    public Stats summarize(long de, long ate, boolean[] dispositivos) {
+        travaLeitura.readLock().lock();
+        try {
+            return agregar(de, ate, dispositivos);
+        } finally {
+            travaLeitura.readLock().unlock();
+        }
+    }
+
+    private Stats agregar(long de, long ate, boolean[] dispositivos) {
+        Stats stats = new Stats();
+        long fim = procurarTempo(ate);
+
+        for (long linha = procurarTempo(de); linha < fim; linha++) {
+            GorillaCodec.Bloco bloco = blocoSelado(linha);
+            if (bloco != null) {
+                // Percorre o bloco descomprimido direto nos arrays, sem voltar aos acessores por linha
+                int inicio = posicaoNoBloco(linha);
+                int ultimo = (int) Math.min(bloco.linhas, inicio + (fim - linha));
+                for (int i = inicio; i < ultimo; i++) {
+                    if (incluido(dispositivos, bloco.dispositivos[i])) {
+                        acumular(stats, bloco, i);
+                    }
+                }
+                linha += ultimo - inicio - 1;
+                continue;
+            }
+
+            if (!incluido(dispositivos, lerDispositivo(linha))) {
+                continue;
+            }
+
+            stats.count++;
+            for (int metrica = 0; metrica < METRICAS; metrica++) {
+                float valor = lerMetrica(metrica, linha);
+                stats.sum[metrica] += valor;
+                stats.min[metrica] = Math.min(stats.min[metrica], valor);
+                stats.max[metrica] = Math.max(stats.max[metrica], valor);
+            }
+        }
+
+        return stats;
+    }
+
+    private static boolean incluido(boolean[] dispositivos, int codigo) {
+        return dispositivos == null || (codigo < dispositivos.length && dispositivos[codigo]);
+    }
+
+    private static void acumular(Stats stats, GorillaCodec.Bloco bloco, int i) {
+        stats.count++;
+        for (int metrica = 0; metrica < METRICAS; metrica++) {
+            float valor = bloco.metricas[metrica][i];
+            stats.sum[metrica] += valor;
+            stats.min[metrica] = Math.min(stats.min[metrica], valor);
+            stats.max[metrica] = Math.max(stats.max[metrica], valor);
+        }
+    }
+
+    public static class Stats {
+        public long count;
+        public final double[] sum = new double[METRICAS];
+        public final float[] min = new float[METRICAS];
+        public final float[] max = new float[METRICAS];
+
+        public Stats() {
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        }
+
+        public double average(int metrica) {
+            return count == 0 ? 0.0 : sum[metrica] / count;
+        }
+    }
+
+    public synchronized void force() {
+        for (Column coluna : colunas) {
+            for (MappedByteBuffer chunk : coluna.chunks) {
+                if (chunk != null) {
+                    chunk.force();
+                }
+            }
+        }
+        meta.force();
+    }
+
+    /**
+     * Comprime um chunk cheio num único arquivo e passa a servir as leituras a partir dele.
+     * As colunas brutas são soltas quando nenhuma leitura está em andamento, como nos chunks descartados.
+     */
+    private void selar(int indice) {
+        MappedByteBuffer[] brutos = new MappedByteBuffer[colunas.length];
+        synchronized (this) {
+            if (selado(indice) != null || (long) indice * LINHAS_POR_CHUNK < primeiraLinha) {
+                return;
+            }
+
+            for (int c = 0; c < colunas.length; c++) {
+                brutos[c] = colunas[c].chunks[indice];
+            }
+        }
+
+        File destino = arquivoSelado(indice);
+        File temporario = new File(destino.getPath() + ".tmp");
+        int blocos = LINHAS_POR_CHUNK / LINHAS_POR_BLOCO;
+        long bytesBrutos = (long) LINHAS_POR_CHUNK * (Integer.BYTES * 2 + Long.BYTES + METRICAS * Float.BYTES);
+
+        try {
+            int[] ids = new int[LINHAS_POR_BLOCO];
+            long[] tempos = new long[LINHAS_POR_BLOCO];
+            int[] devices = new int[LINHAS_POR_BLOCO];
+            float[][] valores = new float[METRICAS][LINHAS_POR_BLOCO];
+
+            long[] offsets = new long[blocos + 1];
+            long posicao = 4 * Integer.BYTES + (long) (blocos + 1) * Long.BYTES;
+
+            try (FileOutputStream arquivo = new FileOutputStream(temporario);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(arquivo, 1 << 16))) {
+                out.writeInt(MAGICO_SELADO);
+                out.writeInt(VERSAO_SELADO);
+                out.writeInt(LINHAS_POR_CHUNK);
+                out.writeInt(blocos);
+                // Offsets reservados agora e preenchidos depois
+                for (int i = 0; i <= blocos; i++) {
+                    out.writeLong(0);
+                }
+
+                for (int b = 0; b < blocos; b++) {
+                    for (int i = 0; i < LINHAS_POR_BLOCO; i++) {
+                        int linha = b * LINHAS_POR_BLOCO + i;
+                        ids[i] = brutos[0].getInt(linha * Integer.BYTES);
+                        tempos[i] = brutos[1].getLong(linha * Long.BYTES);
+                        devices[i] = brutos[2].getInt(linha * Integer.BYTES);
+                        for (int m = 0; m < METRICAS; m++) {
+                            valores[m][i] = brutos[3 + m].getFloat(linha * Float.BYTES);
+                        }
+                    }
+
+                    byte[] comprimido = GorillaCodec.encode(ids, tempos, devices, valores, LINHAS_POR_BLOCO);
+                    offsets[b] = posicao;
+                    out.write(comprimido);
+                    posicao += comprimido.length;
+                }
+                offsets[blocos] = posicao;
+                out.flush();
+                arquivo.getFD().sync();
+            }
+
+            try (FileChannel canal = FileChannel.open(temporario.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate((blocos + 1) * Long.BYTES);
+                for (long offset : offsets) {
+                    buffer.putLong(offset);
+                }
+                buffer.flip();
+                canal.write(buffer, 4 * Integer.BYTES);
+                canal.force(false);
+            }
+
+            Files.move(temporario.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            List<Runnable> liberacoes = new ArrayList<>();
+            synchronized (this) {
+                if ((long) indice * LINHAS_POR_CHUNK < primeiraLinha) {
+                    // Descartado pela retenção enquanto era comprimido
+                    destino.delete();
+                    return;
+                }
+
+                definirSelado(indice, new SealedChunk(destino));
+                for (Column coluna : colunas) {
+                    coluna.arquivo(indice).delete();
+                    liberacoes.add(() -> coluna.liberarChunk(indice));
+                }
+            }
+            liberar(liberacoes);
+
+            LogDAO.addLog("[COLUMN SEAL] Chunk " + indice + " comprimido: " + bytesBrutos + " -> " + posicao + " bytes");
+        } catch (IOException e) {
+            temporario.delete();
+            LogDAO.addLog("[COLUMN ERROR] Falha ao selar o chunk " + indice + ": " + e.getMessage());
+        }
+    }
+
+    private SealedChunk selado(int indice) {
+        SealedChunk[] atuais = selados;
+        return indice < atuais.length ? atuais[indice] : null;
+    }
+
+    private GorillaCodec.Bloco blocoSelado(long linha) {
+        SealedChunk selado = selado((int) (linha / LINHAS_POR_CHUNK));
+        return selado != null ? selado.bloco(linha) : null;
+    }
+
+    private static int posicaoNoBloco(long linha) {
+        return (int) (linha % LINHAS_POR_BLOCO);
+    }
+
+    private synchronized void definirSelado(int indice, SealedChunk selado) {
+        SealedChunk[] novos = Arrays.copyOf(selados, Math.max(selados.length, indice + 1));
+        novos[indice] = selado;
+        selados = novos;
+    }
+
+    private File arquivoSelado(int indice) {
+        return new File(diretorio, String.format("chunk-%06d.gor", indice));
+    }
+
+    private int codigoDispositivo(MicrocontrollerEntity microcontroller) throws IOException {
+        String chave = chaveDispositivo(microcontroller.getId(), microcontroller.getRegion());
+        Integer codigo = codigos.get(chave);
+        if (codigo != null) {
+            return codigo;
+        }
+
+        codigo = dispositivos.size();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(diretorio, ARQUIVO_DISPOSITIVOS), true), StandardCharsets.UTF_8)) {
+            writer.write(codigo + "|" + microcontroller.getId() + "|" + microcontroller.getRegion() + "\n");
+        }
+
+        dispositivos.add(new MicrocontrollerEntity(microcontroller.getId(), microcontroller.getRegion()));
+        codigos.put(chave, codigo);
+        return codigo;
+    }
+
+    private void loadDispositivos() throws IOException {
+        File arquivo = new File(diretorio, ARQUIVO_DISPOSITIVOS);
+        if (!arquivo.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(arquivo), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|", 3);
+                if (parts.length < 3) {
+                    continue;
+                }
+
+                int mcId = Integer.parseInt(parts[1]);
+                dispositivos.add(new MicrocontrollerEntity(mcId, parts[2]));
+                codigos.put(chaveDispositivo(mcId, parts[2]), Integer.parseInt(parts[0]));
+            }
+        }
+    }
+
+    private static String chaveDispositivo(int mcId, String region) {
+        return mcId + "|" + region;
+    }
+}
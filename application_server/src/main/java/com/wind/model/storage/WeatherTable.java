@@ -0,0 +1,461 @@
+package com.wind.model.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.wind.entities.MicrocontrollerEntity;
+import com.wind.entities.WeatherData;
+
+/**
+ * Tabela de WeatherData fora do heap.
+ * Cada leitura ocupa um registro de tamanho fixo em blocos de {@link ByteBuffer} diretos, e a posição
+ * do registro é o próprio id (ids são sequenciais e nunca reaproveitados), então não há índice separado.
+ * Os objetos WeatherData só são criados quando alguém lê, e o histórico não pesa nas coletas do GC.
+ * Um bloco cujos registros foram todos removidos é liberado, o que devolve a memória da retenção.
+ *
+ * Registro: [flags:1][reservado:3][id:4][tempo:8][pressão:4][radiação:4][temperatura:4][umidade:4]
+ * [id do microcontrolador:4][código da região:4]. As regiões ficam num dicionário à parte.
+ *
+ * Escritas são serializadas por um {@link StampedLock}; buscas usam leitura otimista, como na {@code Hash}.
+ */
+public class WeatherTable implements Iterable<WeatherData> {
+    private static final int TAMANHO_REGISTRO = 40;
+    private static final int BITS_BLOCO = 14;
+    private static final int REGISTROS_POR_BLOCO = 1 << BITS_BLOCO;
+
+    private static final int FLAGS = 0;
+    private static final int ID = 4;
+    private static final int TEMPO = 8;
+    private static final int PRESSAO = 16;
+    private static final int RADIACAO = 20;
+    private static final int TEMPERATURA = 24;
+    private static final int UMIDADE = 28;
+    private static final int MICROCONTROLADOR = 32;
+    private static final int REGIAO = 36;
+
+    private static final byte FLAG_PRESENTE = 1;
+    private static final byte FLAG_TEMPO = 1 << 1;
+    private static final byte FLAG_MICROCONTROLADOR = 1 << 2;
+    private static final byte FLAG_REGIAO = 1 << 3;
+
+    // O array é trocado inteiro quando cresce; um leitor otimista nunca vê um array pela metade
+    private volatile ByteBuffer[] blocos = new ByteBuffer[0];
+    private int[] vivosPorBloco = new int[0];
+    private volatile String[] regioes = new String[0];
+    private final Map<String, Integer> codigosRegiao = new HashMap<>();
+
+    private volatile int ocupacao;
+    private volatile int maiorId = -1; // -1 quando vazia
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * @throws IllegalArgumentException Se o id for negativo.
+     */
+    public void inserir(int id, WeatherData weather) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id inválido: " + id);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int indiceBloco = id >>> BITS_BLOCO;
+            ByteBuffer bloco = blocoParaEscrita(indiceBloco);
+            int offset = (id & (REGISTROS_POR_BLOCO - 1)) * TAMANHO_REGISTRO;
+
+            if ((bloco.get(offset + FLAGS) & FLAG_PRESENTE) == 0) {
+                vivosPorBloco[indiceBloco]++;
+                ocupacao++;
+            }
+
+            escrever(bloco, offset, id, weather);
+
+            if (id > maiorId) {
+                maiorId = id;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return Um WeatherData novo com o conteúdo do registro, ou null se o id não está na tabela.
+     */
+    public WeatherData buscar(int id) {
+        if (id < 0) {
+            return null;
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            WeatherData weather = ler(blocos, regioes, id);
+            if (lock.validate(stamp)) {
+                return weather;
+            }
+        }
+
+        // Uma escrita aconteceu durante a leitura otimista: repete com o lock de leitura
+        stamp = lock.readLock();
+        try {
+            return ler(blocos, regioes, id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return O registro removido.
+     * @throws Exception Se o id não está na tabela.
+     */
+    public WeatherData remover(int id) throws Exception {
+        long stamp = lock.writeLock();
+        try {
+            WeatherData weather = ler(blocos, regioes, id);
+            if (weather == null) {
+                throw new Exception("Chave não encontrada");
+            }
+
+            int indiceBloco = id >>> BITS_BLOCO;
+            blocos[indiceBloco].put((id & (REGISTROS_POR_BLOCO - 1)) * TAMANHO_REGISTRO + FLAGS, (byte) 0);
+            ocupacao--;
+
+            if (--vivosPorBloco[indiceBloco] == 0) {
+                // Libera o bloco; a memória direta volta quando o buffer for coletado
+                blocos[indiceBloco] = null;
+            }
+
+            if (id == maiorId) {
+                maiorId = procurarMaiorId(id - 1);
+            }
+
+            return weather;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Registro de maior id, em tempo constante.
+     */
+    public WeatherData getUltimo() {
+        int id = maiorId;
+        while (id >= 0) {
+            WeatherData weather = buscar(id);
+            // Se o registro sumiu entre as duas leituras, tenta de novo com o maior id atual
+            if (weather != null || id == maiorId) {
+                return weather;
+            }
+            id = maiorId;
+        }
+        return null;
+    }
+
+    public List<WeatherData> getAll() {
+        List<WeatherData> list = new ArrayList<>(ocupacao);
+        for (WeatherData weather : this) {
+            list.add(weather);
+        }
+        return list;
+    }
+
+    /**
+     * Percorre os registros em ordem de id copiando um bloco por vez sob o lock de leitura, para o
+     * checkpoint: escritas só esperam a cópia de um bloco, e a memória extra é a de um bloco.
+     * O resultado não é um instante único da tabela; escritas feitas durante a iteração podem ou não aparecer.
+     */
+    public Iterable<WeatherData> copiaPorBlocos() {
+        return CopiaPorBlocos::new;
+    }
+
+    /**
+     * Registros com id maior ou igual a {@code id}, em ordem de id, sem lock; ver {@link #spliterator()}.
+     */
+    public Iterable<WeatherData> aPartirDe(int id) {
+        return () -> Spliterators.iterator(new Divisor(Math.max(0, id), maiorId + 1));
+    }
+
+    /**
+     * @return O maior id presente, ou -1 se a tabela está vazia.
+     */
+    public int getMaiorId() {
+        return maiorId;
+    }
+
+    public int getOcupacao() {
+        return ocupacao;
+    }
+
+    /**
+     * @return Quantos registros cabem nos blocos alocados.
+     */
+    public int getTamanho() {
+        int alocados = 0;
+        for (ByteBuffer bloco : blocos) {
+            if (bloco != null) {
+                alocados++;
+            }
+        }
+        return alocados * REGISTROS_POR_BLOCO;
+    }
+
+    public boolean isEmpty() {
+        return ocupacao == 0;
+    }
+
+    @Override
+    public Iterator<WeatherData> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Percorre os registros em ordem de id, sem lock, dividindo por blocos para {@link #parallelStream()}.
+     * Pode ou não enxergar escritas feitas durante a iteração.
+     */
+    @Override
+    public Spliterator<WeatherData> spliterator() {
+        return new Divisor(0, maiorId + 1);
+    }
+
+    public Stream<WeatherData> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<WeatherData> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Intervalo [id, fim) de ids; a divisão cai sempre numa fronteira de bloco.
+     */
+    private final class Divisor implements Spliterator<WeatherData> {
+        private int id;
+        private final int fim;
+
+        Divisor(int id, int fim) {
+            this.id = id;
+            this.fim = fim;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super WeatherData> acao) {
+            while (id < fim) {
+                if (bloco(blocos, id >>> BITS_BLOCO) == null) {
+                    // Pula o bloco liberado (ou ainda não alocado) inteiro
+                    id = ((id >>> BITS_BLOCO) + 1) << BITS_BLOCO;
+                    continue;
+                }
+
+                WeatherData weather = buscar(id++);
+                if (weather != null) {
+                    acao.accept(weather);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<WeatherData> trySplit() {
+            int meio = (((id + fim) >>> 1) >>> BITS_BLOCO) << BITS_BLOCO;
+            if (meio <= id || meio >= fim) {
+                return null;
+            }
+
+            Divisor prefixo = new Divisor(id, meio);
+            id = meio;
+            return prefixo;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.max(0, fim - id);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | CONCURRENT;
+        }
+    }
+
+    private final class CopiaPorBlocos implements Iterator<WeatherData> {
+        private final ByteBuffer copia = ByteBuffer.allocate(REGISTROS_POR_BLOCO * TAMANHO_REGISTRO).order(ByteOrder.nativeOrder());
+        private final int fimBlocos = (maiorId >>> BITS_BLOCO) + 1;
+        private String[] regioesCopia;
+        private int indiceBloco = -1;
+        private int registro = REGISTROS_POR_BLOCO; // próximo registro dentro da cópia
+        private WeatherData proximo;
+
+        @Override
+        public boolean hasNext() {
+            if (proximo == null) {
+                proximo = avancar();
+            }
+            return proximo != null;
+        }
+
+        @Override
+        public WeatherData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            WeatherData weather = proximo;
+            proximo = null;
+            return weather;
+        }
+
+        private WeatherData avancar() {
+            while (true) {
+                if (registro == REGISTROS_POR_BLOCO && !copiarProximoBloco()) {
+                    return null;
+                }
+                WeatherData weather = lerRegistro(copia, regioesCopia, registro++ * TAMANHO_REGISTRO);
+                if (weather != null) {
+                    return weather;
+                }
+            }
+        }
+
+        private boolean copiarProximoBloco() {
+            while (++indiceBloco < fimBlocos) {
+                long stamp = lock.readLock();
+                try {
+                    ByteBuffer bloco = bloco(blocos, indiceBloco);
+                    if (bloco != null) {
+                        copia.clear();
+                        copia.put(bloco.duplicate().clear());
+                        regioesCopia = regioes;
+                        registro = 0;
+                        return true;
+                    }
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return false;
+        }
+    }
+
+    private ByteBuffer blocoParaEscrita(int indice) {
+        if (indice >= blocos.length) {
+            int tamanho = Math.max(indice + 1, blocos.length * 2);
+            vivosPorBloco = Arrays.copyOf(vivosPorBloco, tamanho);
+            blocos = Arrays.copyOf(blocos, tamanho);
+        }
+
+        ByteBuffer bloco = blocos[indice];
+        if (bloco == null) {
+            bloco = novoBloco();
+            blocos[indice] = bloco;
+        }
+        return bloco;
+    }
+
+    private static ByteBuffer novoBloco() {
+        // allocateDirect já devolve a memória zerada, ou seja, sem nenhum registro presente
+        return ByteBuffer.allocateDirect(REGISTROS_POR_BLOCO * TAMANHO_REGISTRO).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer bloco(ByteBuffer[] blocos, int indice) {
+        return indice < blocos.length ? blocos[indice] : null;
+    }
+
+    private void escrever(ByteBuffer bloco, int offset, int id, WeatherData weather) {
+        MicrocontrollerEntity mc = weather.getMicrocontroller();
+        byte flags = FLAG_PRESENTE;
+        if (weather.getTime() != null) flags |= FLAG_TEMPO;
+        if (mc != null) flags |= FLAG_MICROCONTROLADOR;
+        if (mc != null && mc.getRegion() != null) flags |= FLAG_REGIAO;
+
+        bloco.putInt(offset + ID, id);
+        bloco.putLong(offset + TEMPO, weather.getTime() != null ? weather.getTime().getTime() : 0L);
+        bloco.putFloat(offset + PRESSAO, weather.getPressure());
+        bloco.putFloat(offset + RADIACAO, weather.getRadiation());
+        bloco.putFloat(offset + TEMPERATURA, weather.getTemperature());
+        bloco.putFloat(offset + UMIDADE, weather.getHumidity());
+        bloco.putInt(offset + MICROCONTROLADOR, mc != null ? mc.getId() : 0);
+        bloco.putInt(offset + REGIAO, (flags & FLAG_REGIAO) != 0 ? codigoRegiao(mc.getRegion()) : -1);
+
+        // As flags por último: um registro novo só aparece como presente depois de completo
+        bloco.put(offset + FLAGS, flags);
+    }
+
+    private int codigoRegiao(String regiao) {
+        Integer codigo = codigosRegiao.get(regiao);
+        if (codigo == null) {
+            codigo = regioes.length;
+            String[] novas = Arrays.copyOf(regioes, codigo + 1);
+            novas[codigo] = regiao;
+            regioes = novas;
+            codigosRegiao.put(regiao, codigo);
+        }
+        return codigo;
+    }
+
+    /**
+     * Monta o WeatherData do registro. Chamado também na leitura otimista, então não pode falhar
+     * com um estado intermediário: códigos de região fora do dicionário viram região nula.
+     */
+    private static WeatherData ler(ByteBuffer[] blocos, String[] regioes, int id) {
+        ByteBuffer bloco = bloco(blocos, id >>> BITS_BLOCO);
+        if (bloco == null) {
+            return null;
+        }
+        return lerRegistro(bloco, regioes, (id & (REGISTROS_POR_BLOCO - 1)) * TAMANHO_REGISTRO);
+    }
+
+    private static WeatherData lerRegistro(ByteBuffer bloco, String[] regioes, int offset) {
+        byte flags = bloco.get(offset + FLAGS);
+        if ((flags & FLAG_PRESENTE) == 0) {
+            return null;
+        }
+
+        WeatherData weather = new WeatherData();
+        weather.setId(bloco.getInt(offset + ID));
+        weather.setTime((flags & FLAG_TEMPO) != 0 ? new Date(bloco.getLong(offset + TEMPO)) : null);
+        weather.setPressure(bloco.getFloat(offset + PRESSAO));
+        weather.setRadiation(bloco.getFloat(offset + RADIACAO));
+        weather.setTemperature(bloco.getFloat(offset + TEMPERATURA));
+        weather.setHumidity(bloco.getFloat(offset + UMIDADE));
+
+        if ((flags & FLAG_MICROCONTROLADOR) != 0) {
+            int codigo = bloco.getInt(offset + REGIAO);
+            String regiao = (flags & FLAG_REGIAO) != 0 && codigo >= 0 && codigo < regioes.length ? regioes[codigo] : null;
+            weather.setMicrocontroller(new MicrocontrollerEntity(bloco.getInt(offset + MICROCONTROLADOR), regiao));
+        }
+
+        return weather;
+    }
+
+    /**
+     * Maior id presente a partir de {@code id}, descendo; pula blocos liberados inteiros.
+     */
+    private int procurarMaiorId(int id) {
+        while (id >= 0) {
+            int indiceBloco = id >>> BITS_BLOCO;
+            ByteBuffer bloco = bloco(blocos, indiceBloco);
+            if (bloco == null) {
+                id = (indiceBloco << BITS_BLOCO) - 1;
+                continue;
+            }
+
+            if ((bloco.get((id & (REGISTROS_POR_BLOCO - 1)) * TAMANHO_REGISTRO + FLAGS) & FLAG_PRESENTE) != 0) {
+                return id;
+            }
+            id--;
+        }
+        return -1;
+    }
+}
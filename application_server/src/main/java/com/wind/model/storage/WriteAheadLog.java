@@ -0,0 +1,315 @@
+package com.wind.model.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.wind.model.DAO.LogDAO;
+import com.wind.security.AES;
+import com.wind.security.Util;
+
+/**
+ * Log de escrita antecipada (WAL) segmentado e criptografado.
+ * Cada registro é gravado no fim do segmento atual como [tamanho][crc32][IV + dados cifrados],
+ * de modo que o custo de uma inserção não depende do tamanho da base.
+ * Os registros são agrupados (group commit): um lote é escrito quando junta {@code registrosPorLote}
+ * registros ou quando a janela de {@code janelaMs} termina, com uma única escrita e no máximo um fsync.
+ */
+public class WriteAheadLog {
+
+    /**
+     * Quando o WAL chama fsync: a cada lote, a cada intervalo fixo ou nunca (deixa para o sistema operacional).
+     */
+    public enum Durability {
+        BATCH, INTERVAL, OS;
+
+        public static Durability parse(String nome) {
+            switch (nome.trim().toLowerCase()) {
+                case "batch": return BATCH;
+                case "interval": return INTERVAL;
+                case "os": return OS;
+                default: throw new IllegalArgumentException("Modo de durabilidade inválido: " + nome + ". Use batch, interval ou os.");
+            }
+        }
+    }
+
+    private static final String PREFIXO = "segment-";
+    private static final String EXTENSAO = ".wal";
+    private static final int CABECALHO = Integer.BYTES + Long.BYTES;
+
+    private final File diretorio;
+    private final long tamanhoSegmento;
+    private final AES aes;
+    private final Durability durabilidade;
+    private final int registrosPorLote;
+    private final long janelaMs;
+    private final long intervaloFsyncMs;
+
+    private FileChannel segmentoAtual;
+    private long numeroSegmento;
+    private long bytesNoSegmento;
+
+    // Lote em formação, ainda não escrito no segmento
+    private final ByteArrayOutputStream lote = new ByteArrayOutputStream();
+    private int registrosNoLote;
+    private boolean sujo; // escrito no segmento mas ainda sem fsync
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "WAL-Flusher-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WriteAheadLog(String diretorio, long tamanhoSegmento, AES aes, Durability durabilidade,
+                         int registrosPorLote, long janelaMs, long intervaloFsyncMs) {
+        this.diretorio = new File(diretorio);
+        this.tamanhoSegmento = tamanhoSegmento;
+        this.aes = aes;
+        this.durabilidade = durabilidade;
+        this.registrosPorLote = registrosPorLote;
+        this.janelaMs = janelaMs;
+        this.intervaloFsyncMs = intervaloFsyncMs;
+
+        if (!this.diretorio.exists()) {
+            this.diretorio.mkdirs();
+        }
+    }
+
+    /**
+     * Reaplica, em ordem, todos os registros válidos dos segmentos existentes.
+     * Um registro truncado ou corrompido encerra a leitura do seu segmento.
+     */
+    public void replay(Consumer<byte[]> consumidor) {
+        for (long segmento : listarSegmentos()) {
+            File arquivo = arquivoSegmento(segmento);
+            int registros = 0;
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivo)))) {
+                while (true) {
+                    int tamanho;
+                    try {
+                        tamanho = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+
+                    long crc = in.readLong();
+                    if (tamanho <= 0 || tamanho > tamanhoSegmento) {
+                        LogDAO.addLog("[WAL CORRUPT] Tamanho inválido no segmento " + arquivo.getName());
+                        break;
+                    }
+
+                    byte[] cifrado = new byte[tamanho];
+                    in.readFully(cifrado);
+
+                    if (Util.calculateCRC32(cifrado) != crc) {
+                        LogDAO.addLog("[WAL CORRUPT] CRC inválido no segmento " + arquivo.getName());
+                        break;
+                    }
+
+                    byte[] registro = aes.decrypt(cifrado);
+                    if (registro == null) {
+                        LogDAO.addLog("[WAL CORRUPT] Falha ao descriptografar registro do segmento " + arquivo.getName());
+                        break;
+                    }
+
+                    consumidor.accept(registro);
+                    registros++;
+                }
+            } catch (EOFException e) {
+                LogDAO.addLog("[WAL TRUNCATED] Registro incompleto no fim do segmento " + arquivo.getName());
+            } catch (IOException e) {
+                LogDAO.addLog("[WAL ERROR] Falha ao ler o segmento " + arquivo.getName() + ": " + e.getMessage());
+            }
+
+            LogDAO.addLog("[WAL REPLAY] " + registros + " registros reaplicados de " + arquivo.getName());
+        }
+    }
+
+    /**
+     * Abre um segmento novo para escrita. Segmentos antigos nunca são reabertos,
+     * então uma cauda corrompida por uma queda não contamina novas escritas.
+     */
+    public synchronized void open() throws IOException {
+        List<Long> segmentos = listarSegmentos();
+        numeroSegmento = segmentos.isEmpty() ? 0 : segmentos.get(segmentos.size() - 1);
+        abrirProximoSegmento();
+
+        flusher.scheduleWithFixedDelay(this::flushAgendado, janelaMs, janelaMs, TimeUnit.MILLISECONDS);
+        if (durabilidade == Durability.INTERVAL) {
+            flusher.scheduleWithFixedDelay(this::syncAgendado, intervaloFsyncMs, intervaloFsyncMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Acrescenta um registro ao lote atual. Retorna sem esperar o disco; o registro fica
+     * durável no máximo uma janela (ou um intervalo de fsync) depois, conforme a durabilidade.
+     */
+    public void append(byte[] registro) throws IOException {
+        // A criptografia fica fora do lock para não atrasar o flusher
+        byte[] cifrado = aes.encrypt(registro);
+        if (cifrado == null) {
+            throw new IOException("Falha ao criptografar registro do WAL");
+        }
+
+        ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO);
+        cabecalho.putInt(cifrado.length);
+        cabecalho.putLong(Util.calculateCRC32(cifrado));
+
+        synchronized (this) {
+            lote.write(cabecalho.array());
+            lote.write(cifrado);
+            registrosNoLote++;
+
+            if (registrosNoLote >= registrosPorLote) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Escreve o lote pendente no segmento atual com uma única escrita.
+     */
+    public synchronized void flush() throws IOException {
+        if (registrosNoLote == 0) {
+            return;
+        }
+
+        if (bytesNoSegmento > 0 && bytesNoSegmento + lote.size() > tamanhoSegmento) {
+            abrirProximoSegmento();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(lote.toByteArray());
+        while (buffer.hasRemaining()) {
+            segmentoAtual.write(buffer);
+        }
+
+        bytesNoSegmento += lote.size();
+        lote.reset();
+        registrosNoLote = 0;
+        sujo = true;
+
+        if (durabilidade == Durability.BATCH) {
+            sync();
+        }
+    }
+
+    /**
+     * Escreve o lote pendente e força o segmento atual para o disco.
+     */
+    public synchronized void sync() throws IOException {
+        if (registrosNoLote > 0) {
+            flush();
+        }
+
+        if (sujo) {
+            segmentoAtual.force(false);
+            sujo = false;
+        }
+    }
+
+    private void flushAgendado() {
+        try {
+            flush();
+        } catch (IOException e) {
+            LogDAO.addLog("[WAL ERROR] Falha ao escrever lote: " + e.getMessage());
+        }
+    }
+
+    private void syncAgendado() {
+        try {
+            sync();
+        } catch (IOException e) {
+            LogDAO.addLog("[WAL ERROR] Falha no fsync: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fecha o segmento atual e abre o próximo.
+     * @return O número do último segmento fechado; tudo até ele pode ser coberto por um checkpoint.
+     */
+    public synchronized long roll() throws IOException {
+        long fechado = numeroSegmento;
+        flush();
+        abrirProximoSegmento();
+        return fechado;
+    }
+
+    /**
+     * Remove os segmentos já cobertos por um checkpoint.
+     */
+    public synchronized void discardUpTo(long segmento) {
+        for (long numero : listarSegmentos()) {
+            if (numero <= segmento && numero != numeroSegmento) {
+                if (!arquivoSegmento(numero).delete()) {
+                    LogDAO.addLog("[WAL ERROR] Não foi possível remover o segmento " + numero);
+                }
+            }
+        }
+    }
+
+    public synchronized void close() {
+        flusher.shutdown();
+        try {
+            if (segmentoAtual != null && segmentoAtual.isOpen()) {
+                sync();
+                segmentoAtual.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void abrirProximoSegmento() throws IOException {
+        if (segmentoAtual != null && segmentoAtual.isOpen()) {
+            // Segmentos fechados ficam sempre no disco, qualquer que seja a durabilidade
+            if (durabilidade != Durability.OS && sujo) {
+                segmentoAtual.force(false);
+            }
+            sujo = false;
+            segmentoAtual.close();
+        }
+
+        numeroSegmento++;
+        segmentoAtual = FileChannel.open(arquivoSegmento(numeroSegmento).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        bytesNoSegmento = segmentoAtual.size();
+    }
+
+    private File arquivoSegmento(long numero) {
+        return new File(diretorio, String.format("%s%012d%s", PREFIXO, numero, EXTENSAO));
+    }
+
+    private List<Long> listarSegmentos() {
+        List<Long> segmentos = new ArrayList<>();
+        String[] nomes = diretorio.list();
+
+        if (nomes != null) {
+            for (String nome : nomes) {
+                if (nome.startsWith(PREFIXO) && nome.endsWith(EXTENSAO)) {
+                    try {
+                        segmentos.add(Long.parseLong(nome.substring(PREFIXO.length(), nome.length() - EXTENSAO.length())));
+                    } catch (NumberFormatException e) {
+                        // Arquivo estranho no diretório do WAL, ignora
+                    }
+                }
+            }
+        }
+
+        segmentos.sort(null);
+        return segmentos;
+    }
+}
@@ -0,0 +1,159 @@
+package com.wind.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sessões autenticadas e credenciais já verificadas, ambas com validade limitada.
+ *
+ * Depois de um PBKDF2 bem-sucedido guardamos um SHA-256 de (hash armazenado + senha): um novo
+ * login com a mesma senha compara esse resumo em vez de refazer as 65.536 iterações.
+ * O token devolvido no login permite pular a verificação de senha nas requisições seguintes.
+ */
+public class SessionCache {
+    private static final long TTL_MS = TimeUnit.SECONDS.toMillis(
+            Long.parseLong(System.getenv().getOrDefault("SESSION_TTL_SECONDS", "900")));
+    private static final int BYTES_TOKEN = 32;
+
+    private static final ScheduledExecutorService LIMPEZA = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Session-Cleanup-Thread");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static class Sessao {
+        final int clientId;
+        final String username;
+        final long expira;
+
+        Sessao(int clientId, String username, long expira) {
+            this.clientId = clientId;
+            this.username = username;
+            this.expira = expira;
+        }
+    }
+
+    private static class Credencial {
+        final byte[] resumo;
+        final long expira;
+
+        Credencial(byte[] resumo, long expira) {
+            this.resumo = resumo;
+            this.expira = expira;
+        }
+    }
+
+    private final Map<String, Sessao> sessoes = new ConcurrentHashMap<>();
+    private final Map<String, Credencial> verificadas = new ConcurrentHashMap<>();
+    private final Map<String, Object> travas = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public SessionCache() {
+        long intervalo = Math.max(1000, TTL_MS / 2);
+        LIMPEZA.scheduleWithFixedDelay(this::removerExpiradas, intervalo, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Verifica {@code password} contra {@code storedPassword}, fazendo o PBKDF2 no máximo uma vez
+     * por usuário enquanto a credencial estiver no cache. Logins simultâneos do mesmo usuário
+     * esperam o primeiro terminar e reaproveitam o resultado.
+     */
+    public boolean verify(String username, String password, String storedPassword) {
+        byte[] resumo = resumo(storedPassword, password);
+        if (confere(username, resumo)) {
+            return true;
+        }
+
+        synchronized (travas.computeIfAbsent(username, u -> new Object())) {
+            if (confere(username, resumo)) {
+                return true;
+            }
+            if (!PasswordManager.verifyPassword(password, storedPassword)) {
+                return false;
+            }
+            verificadas.put(username, new Credencial(resumo, System.currentTimeMillis() + TTL_MS));
+            return true;
+        }
+    }
+
+    /**
+     * Abre uma sessão para o cliente e devolve o token que a identifica.
+     */
+    public String open(int clientId, String username) {
+        byte[] bytes = new byte[BYTES_TOKEN];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessoes.put(token, new Sessao(clientId, username, System.currentTimeMillis() + TTL_MS));
+        return token;
+    }
+
+    /**
+     * @return O id do cliente dono da sessão, ou -1 se o token não existe ou expirou.
+     */
+    public int resolve(String token) {
+        if (token == null) {
+            return -1;
+        }
+        Sessao sessao = sessoes.get(token);
+        if (sessao == null) {
+            return -1;
+        }
+        if (sessao.expira < System.currentTimeMillis()) {
+            sessoes.remove(token, sessao);
+            return -1;
+        }
+        return sessao.clientId;
+    }
+
+    public void close(String token) {
+        if (token != null) {
+            sessoes.remove(token);
+        }
+    }
+
+    /**
+     * Esquece credencial e sessões de um usuário, usado quando a senha muda ou o cliente é removido.
+     */
+    public void invalidate(String username) {
+        verificadas.remove(username);
+        travas.remove(username);
+        sessoes.values().removeIf(sessao -> sessao.username.equals(username));
+    }
+
+    private boolean confere(String username, byte[] resumo) {
+        Credencial credencial = verificadas.get(username);
+        if (credencial == null) {
+            return false;
+        }
+        if (credencial.expira < System.currentTimeMillis()) {
+            verificadas.remove(username, credencial);
+            return false;
+        }
+        return MessageDigest.isEqual(credencial.resumo, resumo);
+    }
+
+    private void removerExpiradas() {
+        long agora = System.currentTimeMillis();
+        sessoes.values().removeIf(sessao -> sessao.expira < agora);
+        verificadas.values().removeIf(credencial -> credencial.expira < agora);
+    }
+
+    private static byte[] resumo(String storedPassword, String password) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(storedPassword.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.wind.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.wind.model.DAO.AggregateDAO;
+import com.wind.model.DAO.LogDAO;
+import com.wind.model.DAO.WeatherDataDAO;
+
+/**
+ * Aplica as políticas de retenção em segundo plano: congela e grava os rollups do período que vai
+ * expirar, remove os registros brutos mais antigos que RETENTION_RAW e descarta os rollups de cada
+ * resolução além da sua própria retenção (RETENTION_MINUTE, RETENTION_HOUR, RETENTION_DAY).
+ * Durações aceitam os sufixos m, h e d (ex.: "7d"); "forever" desativa a expiração.
+ */
+public class RetentionCompactor {
+    private static final long PARA_SEMPRE = -1;
+
+    private final WeatherDataDAO weatherDataDAO;
+    private final AggregateDAO aggregateDAO;
+
+    private final long retencaoBruta = parseDuracao("RETENTION_RAW", "7d");
+    private final Map<AggregateDAO.Resolution, Long> retencaoRollups = new EnumMap<>(AggregateDAO.Resolution.class);
+    private final long intervaloMinutos = parseIntervalo();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Retention-Compactor-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RetentionCompactor(WeatherDataDAO weatherDataDAO, AggregateDAO aggregateDAO) {
+        this.weatherDataDAO = weatherDataDAO;
+        this.aggregateDAO = aggregateDAO;
+
+        retencaoRollups.put(AggregateDAO.Resolution.MINUTE, parseDuracao("RETENTION_MINUTE", "90d"));
+        retencaoRollups.put(AggregateDAO.Resolution.HOUR, parseDuracao("RETENTION_HOUR", "forever"));
+        retencaoRollups.put(AggregateDAO.Resolution.DAY, parseDuracao("RETENTION_DAY", "forever"));
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::compact, 1, intervaloMinutos, TimeUnit.MINUTES);
+        System.out.println("Compactador de retenção iniciado (a cada " + intervaloMinutos + " min).");
+    }
+
+    public void compact() {
+        try {
+            long agora = System.currentTimeMillis();
+
+            for (Map.Entry<AggregateDAO.Resolution, Long> entry : retencaoRollups.entrySet()) {
+                if (entry.getValue() != PARA_SEMPRE) {
+                    aggregateDAO.expireBefore(entry.getKey(), agora - entry.getValue());
+                    aggregateDAO.discardFrozenBefore(entry.getKey(), agora - entry.getValue());
+                }
+            }
+
+            if (retencaoBruta != PARA_SEMPRE) {
+                // Alinhado ao dia para que nenhum bucket de rollup fique metade congelado, metade bruto
+                long corte = AggregateDAO.Resolution.DAY.bucket(agora - retencaoBruta);
+                aggregateDAO.freezeBefore(corte);
+                weatherDataDAO.expireBefore(corte);
+            }
+        } catch (Exception e) {
+            System.err.println("Erro na compactação de retenção: " + e.getMessage());
+            LogDAO.addLog("[RETENTION ERROR] " + e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private static long parseIntervalo() {
+        String valor = System.getenv().getOrDefault("RETENTION_INTERVAL_MINUTES", "60");
+        try {
+            long minutos = Long.parseLong(valor.trim());
+            if (minutos > 0) {
+                return minutos;
+            }
+        } catch (NumberFormatException e) {
+            // Cai no aviso abaixo
+        }
+        System.err.println("RETENTION_INTERVAL_MINUTES=\"" + valor + "\" inválido, usando 60");
+        LogDAO.addLog("[RETENTION ERROR] RETENTION_INTERVAL_MINUTES=\"" + valor + "\" inválido, usando 60");
+        return 60;
+    }
+
+    /**
+     * Lê a duração da variável de ambiente; um valor inválido é registrado e troca pelo padrão,
+     * para que um erro de digitação não impeça o servidor de subir.
+     */
+    private static long parseDuracao(String variavel, String padrao) {
+        String valor = System.getenv().getOrDefault(variavel, padrao);
+        try {
+            return parseDuracao(valor);
+        } catch (IllegalArgumentException e) {
+            System.err.println(variavel + "=\"" + valor + "\" inválido (" + e.getMessage() + "), usando " + padrao);
+            LogDAO.addLog("[RETENTION ERROR] " + variavel + "=\"" + valor + "\" inválido, usando " + padrao);
+            return parseDuracao(padrao);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException Se não for "forever" nem um inteiro não negativo seguido de m, h ou d.
+     */
+    private static long parseDuracao(String valor) {
+        String duracao = valor.trim().toLowerCase();
+        if (duracao.equals("forever")) {
+            return PARA_SEMPRE;
+        }
+        if (duracao.length() < 2) {
+            throw new IllegalArgumentException("use um número seguido de m, h ou d, ou forever");
+        }
+
+        long quantidade;
+        try {
+            quantidade = Long.parseLong(duracao.substring(0, duracao.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("use um número seguido de m, h ou d, ou forever");
+        }
+        if (quantidade < 0) {
+            throw new IllegalArgumentException("duração negativa");
+        }
+
+        switch (duracao.charAt(duracao.length() - 1)) {
+            case 'm': return TimeUnit.MINUTES.toMillis(quantidade);
+            case 'h': return TimeUnit.HOURS.toMillis(quantidade);
+            case 'd': return TimeUnit.DAYS.toMillis(quantidade);
+            default: throw new IllegalArgumentException("unidade desconhecida, use m, h ou d");
+        }
+    }
+}
@@ -2,16 +2,23 @@ package com.wind;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.wind.entities.WeatherAggregate;
 import com.wind.entities.WeatherData;
+import com.wind.entities.WeatherPage;
 import com.wind.entities.ClientEntity;
 import com.wind.security.RSA;
 
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 
@@ -22,6 +29,9 @@ public class Controller {
     private static String apiKey;
     private static SecretKey aesKey;
 
+    // Quantidade de registros pedida por página em /app/weather
+    private static final int PAGE_SIZE = 500;
+
     // Bloco inicializador para configurar o cliente HTTP e o ObjectMapper
     static {
         httpClient = HttpClient.newBuilder()
@@ -110,13 +120,70 @@ public class Controller {
     }
 
     /**
-     * Busca todos os dados climáticos disponíveis.
+     * Busca uma página de dados climáticos com tempo em [from, to).
+     * @param from Início do intervalo em epoch milissegundos, ou null para o começo.
+     * @param to Fim do intervalo em epoch milissegundos, ou null para o fim.
+     * @param limit Quantidade máxima de registros na página.
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira.
+     * @return A página, com o cursor da próxima (null na última).
+     * @throws Exception Se ocorrer um erro na comunicação ou processamento.
+     */
+    public static WeatherPage getWeatherPage(Long from, Long to, int limit, String cursor) throws Exception {
+        StringBuilder uri = new StringBuilder(baseUrl + "/app/weather?limit=" + limit);
+        if (from != null) uri.append("&from=").append(from);
+        if (to != null) uri.append("&to=").append(to);
+        if (cursor != null) uri.append("&cursor=").append(cursor);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri.toString()))
+                .header("X-API-Key", apiKey)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        if (response.statusCode() == 200) {
+            return objectMapper.readValue(response.body(), WeatherPage.class);
+        } else {
+            throw new Exception("Erro ao buscar dados: " + response.statusCode() + " - " + response.body());
+        }
+    }
+
+    /**
+     * Busca todos os dados climáticos disponíveis, página por página.
      * @return Um array de WeatherData.
      * @throws Exception Se ocorrer um erro na comunicação ou processamento.
      */
     public static WeatherData[] getAllWeatherDatas() throws Exception {
+        List<WeatherData> all = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            WeatherPage page = getWeatherPage(null, null, PAGE_SIZE, cursor);
+            if (page.getItems() != null) {
+                all.addAll(Arrays.asList(page.getItems()));
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        return all.toArray(new WeatherData[0]);
+    }
+
+    /**
+     * Busca os rollups pré-calculados pelo servidor, sem baixar os registros brutos.
+     * @param resolution "minute", "hour" ou "day".
+     * @param codigo O ID do microcontrolador, ou null para a região inteira.
+     * @param region A região, ou null (junto com o código) para todos os dados.
+     * @return Um array de WeatherAggregate em ordem de tempo.
+     * @throws Exception Se ocorrer um erro na comunicação ou processamento.
+     */
+    public static WeatherAggregate[] getAggregates(String resolution, Integer codigo, String region) throws Exception {
+        StringBuilder uri = new StringBuilder(baseUrl + "/app/weather/aggregates?resolution=" + resolution);
+        if (codigo != null) uri.append("&id=").append(codigo);
+        if (region != null) uri.append("&region=").append(URLEncoder.encode(region, StandardCharsets.UTF_8));
+
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/app/weather"))
+                .uri(URI.create(uri.toString()))
                 .header("X-API-Key", apiKey)
                 .GET()
                 .build();
@@ -124,9 +191,9 @@ public class Controller {
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
 
         if (response.statusCode() == 200) {
-            return objectMapper.readValue(response.body(), WeatherData[].class);
+            return objectMapper.readValue(response.body(), WeatherAggregate[].class);
         } else {
-            throw new Exception("Erro ao buscar dados: " + response.statusCode() + " - " + response.body());
+            throw new Exception("Erro ao buscar agregados: " + response.statusCode() + " - " + response.body());
         }
     }
 
@@ -1,6 +1,7 @@
 package com.wind;
 
 import java.util.Arrays;
+import com.wind.entities.WeatherAggregate;
 import com.wind.entities.WeatherData;
 
 public class View {
@@ -100,10 +101,13 @@ public class View {
                 System.out.println(weatherData + "\n");
             }
 
-            double avgTemperature = Arrays.stream(allWeatherData).mapToDouble(WeatherData::getTemperature).average().orElse(0.0);
-            double avgHumidity = Arrays.stream(allWeatherData).mapToDouble(WeatherData::getHumidity).average().orElse(0.0);
-            double avgPressure = Arrays.stream(allWeatherData).mapToDouble(WeatherData::getPressure).average().orElse(0.0);
-            double avgRadiation = Arrays.stream(allWeatherData).mapToDouble(WeatherData::getRadiation).average().orElse(0.0);
+            // As médias vêm dos rollups diários do servidor, não dos registros baixados
+            WeatherAggregate[] rollups = Controller.getAggregates("day", null, null);
+            long count = Arrays.stream(rollups).mapToLong(WeatherAggregate::getCount).sum();
+            double avgTemperature = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumTemperature).sum() / count;
+            double avgHumidity = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumHumidity).sum() / count;
+            double avgPressure = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumPressure).sum() / count;
+            double avgRadiation = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumRadiation).sum() / count;
             
             System.out.println(Color.YELLOW + "===================================" + Color.RESET);
             System.out.println(Color.YELLOW + "      MÉDIAS GERAIS DOS DADOS      " + Color.RESET);
@@ -145,10 +149,12 @@ public class View {
                     System.out.println(weatherData + "\n");
             }
 
-            double avgTemperature = Arrays.stream(mcWeatherData).mapToDouble(WeatherData::getTemperature).average().orElse(0.0);
-            double avgHumidity = Arrays.stream(mcWeatherData).mapToDouble(WeatherData::getHumidity).average().orElse(0.0);
-            double avgPressure = Arrays.stream(mcWeatherData).mapToDouble(WeatherData::getPressure).average().orElse(0.0);
-            double avgRadiation = Arrays.stream(mcWeatherData).mapToDouble(WeatherData::getRadiation).average().orElse(0.0);
+            WeatherAggregate[] rollups = Controller.getAggregates("day", microcontrollerID, microcontrollerRegion);
+            long count = Arrays.stream(rollups).mapToLong(WeatherAggregate::getCount).sum();
+            double avgTemperature = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumTemperature).sum() / count;
+            double avgHumidity = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumHumidity).sum() / count;
+            double avgPressure = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumPressure).sum() / count;
+            double avgRadiation = count == 0 ? 0.0 : Arrays.stream(rollups).mapToDouble(WeatherAggregate::getSumRadiation).sum() / count;
             
             System.out.println(Color.YELLOW + "===================================" + Color.RESET);
             System.out.println(Color.YELLOW + "      MÉDIAS DOS DADOS DO MC       " + Color.RESET);
@@ -0,0 +1,83 @@
+package com.wind.entities;
+
+import java.io.Serializable;
+
+/**
+ * Resumo (contagem, mínimo, máximo e soma) das leituras de um intervalo de tempo.
+ * O escopo é um microcontrolador (id + região), uma região inteira (id nulo) ou todas as leituras (ambos nulos).
+ */
+public class WeatherAggregate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Integer microcontrollerId;
+    private String region;
+    private String resolution;
+    private long bucketStart;
+    private long count;
+
+    private float minPressure;
+    private float maxPressure;
+    private double sumPressure;
+    private float minRadiation;
+    private float maxRadiation;
+    private double sumRadiation;
+    private float minTemperature;
+    private float maxTemperature;
+    private double sumTemperature;
+    private float minHumidity;
+    private float maxHumidity;
+    private double sumHumidity;
+
+    public WeatherAggregate() {}
+
+    public WeatherAggregate(Integer microcontrollerId, String region, String resolution, long bucketStart) {
+        this.microcontrollerId = microcontrollerId;
+        this.region = region;
+        this.resolution = resolution;
+        this.bucketStart = bucketStart;
+    }
+
+    // Médias derivadas das somas
+    public double getAvgPressure() { return count == 0 ? 0.0 : sumPressure / count; }
+    public double getAvgRadiation() { return count == 0 ? 0.0 : sumRadiation / count; }
+    public double getAvgTemperature() { return count == 0 ? 0.0 : sumTemperature / count; }
+    public double getAvgHumidity() { return count == 0 ? 0.0 : sumHumidity / count; }
+
+    // Getters
+    public Integer getMicrocontrollerId() { return microcontrollerId; }
+    public String getRegion() { return region; }
+    public String getResolution() { return resolution; }
+    public long getBucketStart() { return bucketStart; }
+    public long getCount() { return count; }
+    public float getMinPressure() { return minPressure; }
+    public float getMaxPressure() { return maxPressure; }
+    public double getSumPressure() { return sumPressure; }
+    public float getMinRadiation() { return minRadiation; }
+    public float getMaxRadiation() { return maxRadiation; }
+    public double getSumRadiation() { return sumRadiation; }
+    public float getMinTemperature() { return minTemperature; }
+    public float getMaxTemperature() { return maxTemperature; }
+    public double getSumTemperature() { return sumTemperature; }
+    public float getMinHumidity() { return minHumidity; }
+    public float getMaxHumidity() { return maxHumidity; }
+    public double getSumHumidity() { return sumHumidity; }
+
+    // Setters
+    public void setMicrocontrollerId(Integer microcontrollerId) { this.microcontrollerId = microcontrollerId; }
+    public void setRegion(String region) { this.region = region; }
+    public void setResolution(String resolution) { this.resolution = resolution; }
+    public void setBucketStart(long bucketStart) { this.bucketStart = bucketStart; }
+    public void setCount(long count) { this.count = count; }
+    public void setMinPressure(float minPressure) { this.minPressure = minPressure; }
+    public void setMaxPressure(float maxPressure) { this.maxPressure = maxPressure; }
+    public void setSumPressure(double sumPressure) { this.sumPressure = sumPressure; }
+    public void setMinRadiation(float minRadiation) { this.minRadiation = minRadiation; }
+    public void setMaxRadiation(float maxRadiation) { this.maxRadiation = maxRadiation; }
+    public void setSumRadiation(double sumRadiation) { this.sumRadiation = sumRadiation; }
+    public void setMinTemperature(float minTemperature) { this.minTemperature = minTemperature; }
+    public void setMaxTemperature(float maxTemperature) { this.maxTemperature = maxTemperature; }
+    public void setSumTemperature(double sumTemperature) { this.sumTemperature = sumTemperature; }
+    public void setMinHumidity(float minHumidity) { this.minHumidity = minHumidity; }
+    public void setMaxHumidity(float maxHumidity) { this.maxHumidity = maxHumidity; }
+    public void setSumHumidity(double sumHumidity) { this.sumHumidity = sumHumidity; }
+}
@@ -0,0 +1,23 @@
+package com.wind.entities;
+
+import java.io.Serializable;
+
+public class WeatherPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private WeatherData[] items;
+    private String nextCursor; // null quando não há mais páginas
+
+    public WeatherPage() {}
+
+    public WeatherPage(WeatherData[] items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public WeatherData[] getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+
+    public void setItems(WeatherData[] items) { this.items = items; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
@@ -0,0 +1,239 @@
+package com.wind.message;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import com.wind.entities.MicrocontrollerEntity;
+import com.wind.entities.WeatherData;
+
+/**
+ * Codec binário versionado para WeatherData e MicrocontrollerEntity, no lugar da serialização Java.
+ *
+ * WeatherData (versão 1):
+ * [versão:1][flags:1][id:4][tempo em epoch ms:8][pressão:4][radiação:4][temperatura:4][umidade:4][microcontrolador?]
+ * MicrocontrollerEntity: [id:varint][tamanho da região:varint][região UTF-8]
+ *
+ * Tudo em big-endian. Os bits de flags marcam campos nulos, para que o decode devolva
+ * exatamente o que foi gravado.
+ */
+public final class WeatherCodec {
+    public static final byte VERSAO = 1;
+
+    /** Content type usado quando um WeatherData codificado trafega pelo RabbitMQ. */
+    public static final String CONTENT_TYPE = "application/x-wind-weather";
+
+    private static final int FLAG_TEMPO = 1;
+    private static final int FLAG_MICROCONTROLADOR = 1 << 1;
+    private static final int FLAG_REGIAO = 1 << 2;
+
+    // versão + flags + id + tempo + 4 métricas
+    private static final int TAMANHO_FIXO = 2 + Integer.BYTES + Long.BYTES + 4 * Float.BYTES;
+
+    private WeatherCodec() {
+    }
+
+    /**
+     * Tamanho exato, em bytes, de {@code weather} codificado.
+     */
+    public static int encodedSize(WeatherData weather) {
+        return TAMANHO_FIXO + encodedSize(weather.getMicrocontroller());
+    }
+
+    public static byte[] encode(WeatherData weather) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(weather));
+        write(weather, buffer);
+        return buffer.array();
+    }
+
+    public static WeatherData decode(byte[] dados) {
+        return decode(dados, 0, dados.length);
+    }
+
+    public static WeatherData decode(byte[] dados, int offset, int tamanho) {
+        return read(ByteBuffer.wrap(dados, offset, tamanho));
+    }
+
+    /**
+     * Escreve {@code weather} na posição atual de {@code buffer}.
+     * @throws BufferOverflowException Se não couber; use {@link #encodedSize(WeatherData)}.
+     */
+    public static void write(WeatherData weather, ByteBuffer buffer) {
+        MicrocontrollerEntity mc = weather.getMicrocontroller();
+        int flags = 0;
+        if (weather.getTime() != null) flags |= FLAG_TEMPO;
+        if (mc != null) flags |= FLAG_MICROCONTROLADOR;
+        if (mc != null && mc.getRegion() != null) flags |= FLAG_REGIAO;
+
+        buffer.put(VERSAO);
+        buffer.put((byte) flags);
+        buffer.putInt(weather.getId());
+        buffer.putLong(weather.getTime() != null ? weather.getTime().getTime() : 0L);
+        buffer.putFloat(weather.getPressure());
+        buffer.putFloat(weather.getRadiation());
+        buffer.putFloat(weather.getTemperature());
+        buffer.putFloat(weather.getHumidity());
+
+        if (mc != null) {
+            writeMicrocontroller(mc, buffer);
+        }
+    }
+
+    /**
+     * Lê um WeatherData a partir da posição atual de {@code buffer}.
+     * @throws IllegalArgumentException Se a versão for desconhecida ou os dados estiverem truncados.
+     */
+    public static WeatherData read(ByteBuffer buffer) {
+        try {
+            byte versao = buffer.get();
+            if (versao != VERSAO) {
+                throw new IllegalArgumentException("Versão de WeatherData desconhecida: " + versao);
+            }
+
+            int flags = buffer.get();
+            WeatherData weather = new WeatherData();
+            weather.setId(buffer.getInt());
+            long tempo = buffer.getLong();
+            weather.setTime((flags & FLAG_TEMPO) != 0 ? new Date(tempo) : null);
+            weather.setPressure(buffer.getFloat());
+            weather.setRadiation(buffer.getFloat());
+            weather.setTemperature(buffer.getFloat());
+            weather.setHumidity(buffer.getFloat());
+
+            if ((flags & FLAG_MICROCONTROLADOR) != 0) {
+                weather.setMicrocontroller(readMicrocontroller(buffer, (flags & FLAG_REGIAO) != 0));
+            }
+
+            return weather;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("WeatherData truncado", e);
+        }
+    }
+
+    public static int encodedSize(MicrocontrollerEntity mc) {
+        if (mc == null) {
+            return 0;
+        }
+
+        int regiao = mc.getRegion() != null ? utf8Length(mc.getRegion()) : 0;
+        return varintSize(zigzag(mc.getId())) + varintSize(regiao) + regiao;
+    }
+
+    public static void writeMicrocontroller(MicrocontrollerEntity mc, ByteBuffer buffer) {
+        writeVarint(zigzag(mc.getId()), buffer);
+
+        if (mc.getRegion() == null) {
+            writeVarint(0, buffer);
+            return;
+        }
+
+        byte[] regiao = mc.getRegion().getBytes(StandardCharsets.UTF_8);
+        writeVarint(regiao.length, buffer);
+        buffer.put(regiao);
+    }
+
+    public static MicrocontrollerEntity readMicrocontroller(ByteBuffer buffer, boolean temRegiao) {
+        int id = unzigzag(readVarint(buffer));
+        int tamanho = readVarint(buffer);
+        if (tamanho < 0 || tamanho > buffer.remaining()) {
+            throw new IllegalArgumentException("Tamanho de região inválido: " + tamanho);
+        }
+
+        String regiao = null;
+        if (temRegiao && buffer.hasArray()) {
+            regiao = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), tamanho, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + tamanho);
+        } else if (temRegiao) {
+            byte[] bytes = new byte[tamanho];
+            buffer.get(bytes);
+            regiao = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            buffer.position(buffer.position() + tamanho);
+        }
+
+        return new MicrocontrollerEntity(id, regiao);
+    }
+
+    /**
+     * MicrocontrollerEntity avulso: [versão][flags][microcontrolador], usado pelo cadastro da estação.
+     */
+    public static byte[] encode(MicrocontrollerEntity mc) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + encodedSize(mc));
+        buffer.put(VERSAO);
+        buffer.put((byte) (mc.getRegion() != null ? FLAG_REGIAO : 0));
+        writeMicrocontroller(mc, buffer);
+        return buffer.array();
+    }
+
+    public static MicrocontrollerEntity decodeMicrocontroller(ByteBuffer buffer) {
+        try {
+            byte versao = buffer.get();
+            if (versao != VERSAO) {
+                throw new IllegalArgumentException("Versão de MicrocontrollerEntity desconhecida: " + versao);
+            }
+            int flags = buffer.get();
+            return readMicrocontroller(buffer, (flags & FLAG_REGIAO) != 0);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("MicrocontrollerEntity truncado", e);
+        }
+    }
+
+    private static int zigzag(int valor) {
+        return (valor << 1) ^ (valor >> 31);
+    }
+
+    private static int unzigzag(int valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private static int varintSize(int valor) {
+        int tamanho = 1;
+        while ((valor & ~0x7F) != 0) {
+            valor >>>= 7;
+            tamanho++;
+        }
+        return tamanho;
+    }
+
+    private static void writeVarint(int valor, ByteBuffer buffer) {
+        while ((valor & ~0x7F) != 0) {
+            buffer.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int valor = 0;
+        for (int deslocamento = 0; deslocamento < 35; deslocamento += 7) {
+            byte b = buffer.get();
+            valor |= (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IllegalArgumentException("Varint malformado");
+    }
+
+    private static int utf8Length(String texto) {
+        int tamanho = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                tamanho++;
+            } else if (c < 0x800) {
+                tamanho += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                tamanho += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                tamanho++; // substituto solto vira '?' no encoder UTF-8
+            } else {
+                tamanho += 3;
+            }
+        }
+        return tamanho;
+    }
+}
@@ -1,15 +1,22 @@
 package com.wind; 
 
 import com.wind.entities.MicrocontrollerEntity;
+import com.wind.entities.WeatherData;
+import com.wind.model.DAO.EventLog;
+import com.wind.model.DAO.EventLog.Level;
+import com.wind.message.WeatherCodec;
 import com.wind.model.DAO.MicrocontrollerDAO;
 import com.wind.service.ManagementService;
 import com.wind.service.RabbitMQService;
 import com.wind.service.ServiceDiscoveryService;
+import com.wind.service.SinkQueue;
+import com.wind.service.SinkQueue.OverflowPolicy;
 import com.wind.service.UdpService;
 import com.wind.security.RSA;
 import com.wind.security.AES;
 
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,6 +27,7 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 public class WeatherStation {
+    private static final EventLog.Category LOG = EventLog.category("ingest");
 
     // Configuração dos Brokers / UDP
     private static final int INGRESS_PORT = Integer.parseInt(System.getenv().getOrDefault("INGRESS_PORT", "9876"));
@@ -50,6 +58,10 @@ public class WeatherStation {
     private UdpService udpService;
     private ManagementService managementService;
     private MicrocontrollerDAO microcontrollerDAO;
+
+    // Each output has its own queue and sender thread, so a slow broker cannot hold up the live UDP feed
+    private SinkQueue<String> udpSink;
+    private SinkQueue<Object> brokerSink;
     
     private PrivateKey privateKey;
     private PublicKey publicKey;
@@ -92,6 +104,12 @@ public class WeatherStation {
             System.out.println("[INIT] Setting up Egress UDP Socket (" + EGRESS_HOST + ":" + EGRESS_PORT + ")...");
             udpService.setupEgress();
 
+            // Live feed: the newest readings matter most. Broker: spill to disk up to SINK_SPILL_MAX_BYTES.
+            // Readings carry the time they reached the station, so a replay after an outage keeps
+            // its measurement times, within the server's INGEST_MAX_DELAY_MINUTES window.
+            udpSink = new SinkQueue<>("udp", 10_000, OverflowPolicy.DROP_OLDEST, udpService::send, null);
+            brokerSink = new SinkQueue<>("rabbitmq", 10_000, OverflowPolicy.SPILL, this::publish, BROKER_CODEC);
+
             System.out.println("[INIT] Starting Ingress UDP Listener on port " + INGRESS_PORT + "...");
             udpService.startIngressListener(this::processMessage);
 
@@ -127,6 +145,12 @@ public class WeatherStation {
         if (udpService != null) {
             udpService.stop();
         }
+        if (udpSink != null) {
+            udpSink.close();
+        }
+        if (brokerSink != null) {
+            brokerSink.close();
+        }
         if (rabbitMQService != null) {
             rabbitMQService.close();
         }
@@ -155,13 +179,14 @@ public class WeatherStation {
                     String decrypted = aes.decrypt(encryptedData);
                     if (decrypted != null) {
                         processedPayload = decrypted.trim();
-                        System.out.println("   [DECRYPTED] Payload from ID " + id + ": " + processedPayload);
+                        LOG.event(Level.DEBUG, "decrypted", "id", id);
                     } else {
-                        System.err.println("   [ERROR] Failed to decrypt payload from ID " + id);
+                        LOG.event(Level.WARN, "decrypt_failed", "id", id);
                         return;
                     }
                 } else {
-                    System.out.println("   [UNKNOWN KEY] No key found for ID " + id + ". Is handshake done?");
+                    // No handshake for this id; the payload goes on as plain text
+                    LOG.event(Level.INFO, "unknown_key", "id", id);
                 }
             } catch (NumberFormatException e) {
                 //
@@ -201,28 +226,86 @@ public class WeatherStation {
                     MicrocontrollerEntity mc = microcontrollerDAO.getMicrocontroller(id);
 
                     if (mc == null) {
-                        System.out.println("   [ACCESS DENIED] Ignored data from unregistered Microcontroller ID: " + id);
+                        LOG.event(Level.WARN, "denied", "id", id);
                         return; // Stop processing this message
                     }
                 } else {
-                    System.out.println("   [INVALID] Could not parse ID from payload: " + parts[0]);
+                    LOG.event(Level.WARN, "invalid_id", "value", parts[0]);
                     return;
                 }
             }
         } catch (Exception e) {
-            System.err.println("   [ERROR] Malformed payload during validation: " + e.getMessage());
+            LOG.event(Level.WARN, "malformed", "error", e.getMessage());
             return;
         }
 
-        System.out.println("   Processed Payload: " + processedPayload);
+        LOG.event(Level.TRACE, "processed", "payload", processedPayload);
 
         // In UDP we don't have topics, so we just forward the payload
-        if (udpService != null) {
-            udpService.send(processedPayload);
+        if (udpSink != null) {
+            udpSink.offer(processedPayload);
         }
         
-        if (rabbitMQService != null) {
-            rabbitMQService.publish(processedPayload);
+        if (brokerSink != null) {
+            WeatherData weather = toWeatherData(processedPayload);
+            brokerSink.offer(weather != null ? weather : processedPayload);
+        }
+    }
+
+    private boolean publish(Object item) {
+        if (item instanceof WeatherData) {
+            return rabbitMQService.publish((WeatherData) item);
+        }
+        return rabbitMQService.publish((String) item);
+    }
+
+    /**
+     * Spill format for the broker sink: a tag byte, then the WeatherCodec bytes or the UTF-8 text payload.
+     */
+    private static final SinkQueue.Codec<Object> BROKER_CODEC = new SinkQueue.Codec<>() {
+        private static final byte TEXT = 0;
+        private static final byte WEATHER = 1;
+
+        @Override
+        public byte[] encode(Object item) {
+            byte[] body = item instanceof WeatherData
+                    ? WeatherCodec.encode((WeatherData) item)
+                    : ((String) item).getBytes(StandardCharsets.UTF_8);
+            byte[] data = new byte[body.length + 1];
+            data[0] = item instanceof WeatherData ? WEATHER : TEXT;
+            System.arraycopy(body, 0, data, 1, body.length);
+            return data;
+        }
+
+        @Override
+        public Object decode(byte[] data) {
+            if (data[0] == WEATHER) {
+                return WeatherCodec.decode(data, 1, data.length - 1);
+            }
+            return new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Builds the reading from the normalized "id|region|pressure|radiation|temperature|humidity" payload.
+     * Returns null when the payload does not have that shape, so it can still be forwarded as text.
+     */
+    private WeatherData toWeatherData(String payload) {
+        String[] parts = payload.split("\\|");
+        if (parts.length < 6) {
+            return null;
+        }
+
+        try {
+            int id = Integer.parseInt(parts[0].replaceAll("\\D+", ""));
+            MicrocontrollerEntity mc = new MicrocontrollerEntity(id, parts[1].trim());
+            return new WeatherData(mc,
+                    Float.parseFloat(parts[2].trim()),
+                    Float.parseFloat(parts[3].trim()),
+                    Float.parseFloat(parts[4].trim()),
+                    Float.parseFloat(parts[5].trim()));
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package com.wind.datastructures;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores e histogramas de uma {@link Hash}, no lugar de uma linha de log por operação.
+ * Tudo é acumulado com {@link LongAdder}, então threads diferentes não disputam o mesmo contador.
+ * Os contadores são exatos; histogramas e taxa de acerto vêm de uma operação a cada {@code AMOSTRAGEM},
+ * porque medir o tempo de todas custaria quase tanto quanto a própria busca otimista.
+ *
+ * Tabelas criadas com nome ficam registradas e aparecem em {@link #snapshotAll()}.
+ */
+public class HashMetrics {
+    private static final Map<String, HashMetrics> REGISTRADAS = new ConcurrentHashMap<>();
+    private static final int AMOSTRAGEM = 64;
+
+    private final Hash<?> hash;
+
+    final LongAdder insercoes = new LongAdder();
+    final LongAdder atualizacoes = new LongAdder();
+    final LongAdder remocoes = new LongAdder();
+    final LongAdder buscas = new LongAdder();
+    final LongAdder buscasAmostradas = new LongAdder();
+    final LongAdder acertosAmostrados = new LongAdder();
+    final LongAdder colisoes = new LongAdder();
+    final LongAdder redimensionamentos = new LongAdder();
+    final LongAdder compactacoes = new LongAdder();
+
+    final Histograma sondagem = new Histograma(); // posições além da ideal para colocar uma chave nova
+    final Histograma latenciaInsercao = new Histograma();
+    final Histograma latenciaRemocao = new Histograma();
+    final Histograma latenciaBusca = new Histograma();
+
+    HashMetrics(Hash<?> hash) {
+        this.hash = hash;
+    }
+
+    static void registrar(String nome, HashMetrics metricas) {
+        REGISTRADAS.put(nome, metricas);
+    }
+
+    /**
+     * Métricas de todas as tabelas registradas, por nome, prontas para serializar em JSON.
+     */
+    public static Map<String, Map<String, Object>> snapshotAll() {
+        Map<String, Map<String, Object>> todas = new TreeMap<>();
+        REGISTRADAS.forEach((nome, metricas) -> todas.put(nome, metricas.snapshot()));
+        return todas;
+    }
+
+    /**
+     * @return 0 quando a operação não entra na amostra, ou o instante de início.
+     */
+    long inicio() {
+        return ThreadLocalRandom.current().nextInt(AMOSTRAGEM) == 0 ? System.nanoTime() : 0L;
+    }
+
+    void registrarBusca(boolean acerto, long inicio) {
+        buscas.increment();
+        if (inicio != 0L) {
+            latenciaBusca.registrar(System.nanoTime() - inicio);
+            buscasAmostradas.increment();
+            if (acerto) {
+                acertosAmostrados.increment();
+            }
+        }
+    }
+
+    void registrarInsercao(int distancia, long inicio) {
+        insercoes.increment();
+        if (distancia > 0) {
+            colisoes.increment();
+        }
+        if (inicio != 0L) {
+            sondagem.registrar(distancia);
+        }
+    }
+
+    static void registrarLatencia(Histograma histograma, long inicio) {
+        if (inicio != 0L) {
+            histograma.registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        int ocupacao = hash.getOcupacao();
+        int capacidade = hash.getTamanho();
+
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("occupancy", ocupacao);
+        mapa.put("capacity", capacidade);
+        mapa.put("loadFactor", capacidade > 0 ? (double) ocupacao / capacidade : 0.0);
+        mapa.put("tombstones", hash.getLapides());
+        mapa.put("migrating", hash.isMigrando());
+        mapa.put("inserts", insercoes.sum());
+        mapa.put("updates", atualizacoes.sum());
+        mapa.put("removes", remocoes.sum());
+        long amostradas = buscasAmostradas.sum();
+        mapa.put("lookups", buscas.sum());
+        mapa.put("hitRatio", amostradas > 0 ? (double) acertosAmostrados.sum() / amostradas : 0.0);
+        mapa.put("collisions", colisoes.sum());
+        mapa.put("resizes", redimensionamentos.sum());
+        mapa.put("compactions", compactacoes.sum());
+        mapa.put("sampleRate", 1.0 / AMOSTRAGEM);
+        mapa.put("probeLength", sondagem.snapshot());
+        mapa.put("insertLatencyNs", latenciaInsercao.snapshot());
+        mapa.put("removeLatencyNs", latenciaRemocao.snapshot());
+        mapa.put("lookupLatencyNs", latenciaBusca.snapshot());
+        return mapa;
+    }
+
+    /**
+     * Histograma em faixas de potência de dois: a faixa i guarda valores até 2^i - 1.
+     * Percentis são aproximados pelo limite superior da faixa.
+     */
+    static class Histograma {
+        private static final int FAIXAS = 48;
+
+        private final LongAdder[] faixas = new LongAdder[FAIXAS];
+        private final LongAdder soma = new LongAdder();
+        private final LongAccumulator maximo = new LongAccumulator(Long::max, 0L);
+
+        Histograma() {
+            for (int i = 0; i < FAIXAS; i++) {
+                faixas[i] = new LongAdder();
+            }
+        }
+
+        void registrar(long valor) {
+            if (valor < 0) {
+                valor = 0;
+            }
+            faixas[Math.min(FAIXAS - 1, 64 - Long.numberOfLeadingZeros(valor))].increment();
+            soma.add(valor);
+            maximo.accumulate(valor);
+        }
+
+        Map<String, Object> snapshot() {
+            long[] contagens = new long[FAIXAS];
+            long total = 0;
+            for (int i = 0; i < FAIXAS; i++) {
+                contagens[i] = faixas[i].sum();
+                total += contagens[i];
+            }
+
+            Map<String, Long> porFaixa = new LinkedHashMap<>();
+            for (int i = 0; i < FAIXAS; i++) {
+                if (contagens[i] > 0) {
+                    porFaixa.put("<=" + limite(i), contagens[i]);
+                }
+            }
+
+            Map<String, Object> mapa = new LinkedHashMap<>();
+            mapa.put("count", total);
+            mapa.put("mean", total > 0 ? (double) soma.sum() / total : 0.0);
+            mapa.put("p50", percentil(contagens, total, 0.50));
+            mapa.put("p99", percentil(contagens, total, 0.99));
+            mapa.put("max", maximo.get());
+            mapa.put("buckets", porFaixa);
+            return mapa;
+        }
+
+        private static long limite(int faixa) {
+            return faixa == 0 ? 0 : (1L << faixa) - 1;
+        }
+
+        private static long percentil(long[] contagens, long total, double fracao) {
+            long alvo = (long) Math.ceil(total * fracao);
+            long acumulado = 0;
+            for (int i = 0; i < FAIXAS; i++) {
+                acumulado += contagens[i];
+                if (acumulado >= alvo && acumulado > 0) {
+                    return limite(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
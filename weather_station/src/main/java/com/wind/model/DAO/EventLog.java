@@ -0,0 +1,160 @@
+package com.wind.model.DAO;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leveled, structured event logging for the per-packet paths, written through {@link LogDAO}.
+ *
+ * Each category has its own level, sampling and per-second rate limit, read from the environment:
+ * LOG_LEVEL (default INFO) and LOG_LEVEL_&lt;CATEGORY&gt;, LOG_SAMPLE_&lt;CATEGORY&gt; (keep 1 in N events
+ * below WARN, default 1) and LOG_RATE_&lt;CATEGORY&gt; (events per second, default 100).
+ *
+ * Events take their fields as separate arguments and the line is only built once the event
+ * passed level, sampling and rate checks, so a disabled event is a single comparison.
+ * Output is one "key=value" line per event, e.g. "[EVENT] level=WARN cat=udp event=denied id=7".
+ */
+public final class EventLog {
+
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR }
+
+    private static final Map<String, Category> CATEGORIES = new ConcurrentHashMap<>();
+    private static final Level DEFAULT_LEVEL = parseLevel(System.getenv("LOG_LEVEL"), Level.INFO);
+
+    private EventLog() {
+    }
+
+    public static Category category(String name) {
+        return CATEGORIES.computeIfAbsent(name, Category::new);
+    }
+
+    public static final class Category {
+        private final String name;
+        private final int sample;
+        private final int ratePerSecond;
+        private volatile Level level;
+
+        // Rate limit window: current second and how many events it has let through / suppressed
+        private final AtomicLong window = new AtomicLong();
+        private final AtomicInteger emitted = new AtomicInteger();
+        private final AtomicInteger suppressed = new AtomicInteger();
+
+        private Category(String name) {
+            String key = name.toUpperCase(Locale.ROOT);
+            this.name = name;
+            this.level = parseLevel(System.getenv("LOG_LEVEL_" + key), DEFAULT_LEVEL);
+            this.sample = Math.max(1, Integer.parseInt(System.getenv().getOrDefault("LOG_SAMPLE_" + key, "1")));
+            this.ratePerSecond = Integer.parseInt(System.getenv().getOrDefault("LOG_RATE_" + key, "100"));
+        }
+
+        public boolean isEnabled(Level level) {
+            return level.compareTo(this.level) >= 0;
+        }
+
+        public void setLevel(Level level) {
+            this.level = level;
+        }
+
+        public void event(Level level, String event) {
+            if (isEnabled(level) && admit(level)) {
+                emit(level, event, null, null, null, null, null, null);
+            }
+        }
+
+        public void event(Level level, String event, String k1, Object v1) {
+            if (isEnabled(level) && admit(level)) {
+                emit(level, event, k1, v1, null, null, null, null);
+            }
+        }
+
+        // Numeric ids are the common field; taking a long avoids boxing them when the event is off
+        public void event(Level level, String event, String k1, long v1) {
+            if (isEnabled(level) && admit(level)) {
+                emit(level, event, k1, v1, null, null, null, null);
+            }
+        }
+
+        public void event(Level level, String event, String k1, Object v1, String k2, Object v2) {
+            if (isEnabled(level) && admit(level)) {
+                emit(level, event, k1, v1, k2, v2, null, null);
+            }
+        }
+
+        public void event(Level level, String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+            if (isEnabled(level) && admit(level)) {
+                emit(level, event, k1, v1, k2, v2, k3, v3);
+            }
+        }
+
+        /**
+         * Sampling only thins out routine events; WARN and ERROR are limited by rate alone.
+         */
+        private boolean admit(Level level) {
+            if (sample > 1 && level.compareTo(Level.WARN) < 0 && ThreadLocalRandom.current().nextInt(sample) != 0) {
+                return false;
+            }
+            if (ratePerSecond <= 0) {
+                return true;
+            }
+
+            long second = System.nanoTime() / 1_000_000_000L;
+            long current = window.get();
+            if (second != current && window.compareAndSet(current, second)) {
+                emitted.set(0);
+                int dropped = suppressed.getAndSet(0);
+                if (dropped > 0) {
+                    LogDAO.addLog("[EVENT] level=WARN cat=" + name + " event=suppressed count=" + dropped);
+                }
+            }
+
+            if (emitted.incrementAndGet() <= ratePerSecond) {
+                return true;
+            }
+            suppressed.incrementAndGet();
+            return false;
+        }
+
+        private void emit(Level level, String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+            StringBuilder line = new StringBuilder(96);
+            line.append("[EVENT] level=").append(level).append(" cat=").append(name).append(" event=").append(event);
+            field(line, k1, v1);
+            field(line, k2, v2);
+            field(line, k3, v3);
+
+            String text = line.toString();
+            LogDAO.addLog(text);
+            if (level == Level.ERROR) {
+                System.err.println(text);
+            }
+        }
+
+        private static void field(StringBuilder line, String key, Object value) {
+            if (key == null) {
+                return;
+            }
+            line.append(' ').append(key).append('=');
+            String text = String.valueOf(value);
+            if (text.isEmpty() || text.indexOf(' ') >= 0 || text.indexOf('=') >= 0 || text.indexOf('"') >= 0) {
+                line.append('"').append(text.replace("\"", "\\\"")).append('"');
+            } else {
+                line.append(text);
+            }
+        }
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level '" + value + "', using " + fallback);
+            return fallback;
+        }
+    }
+}
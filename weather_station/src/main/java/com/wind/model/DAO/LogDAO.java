@@ -1,70 +1,689 @@
 package com.wind.model.DAO;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Log em arquivo, só com append.
+ *
+ * addLog apenas coloca a mensagem num buffer circular de tamanho fixo e volta; uma thread
+ * dedicada formata as linhas e grava em lote. Se o buffer encher, a mensagem é descartada
+ * (e contada) em vez de segurar quem chamou, então a memória usada fica limitada.
+ *
+ * O buffer é uma fila limitada sem locks com um número de sequência por posição: produtores
+ * reservam uma posição com CAS em {@code cauda}, e a thread de escrita é a única consumidora.
+ *
+ * O arquivo ativo é "log.txt". Quando passa de {@code LOG_SEGMENT_BYTES} ou fica mais velho que
+ * {@code LOG_SEGMENT_MAX_AGE_HOURS}, vira um segmento "log-yyyyMMdd-HHmmss-NNN.txt" (comprimido com gzip
+ * se {@code LOG_COMPRESS=true}) e só os {@code LOG_MAX_SEGMENTS} mais novos, com menos de
+ * {@code LOG_RETENTION_DAYS}, são mantidos. Em memória fica apenas um rabo das últimas linhas;
+ * o histórico não é lido na inicialização.
+ *
+ * As linhas têm numeração global e cada arquivo tem um {@link LogIndex} (o dos segmentos fechados
+ * fica em um ".idx" ao lado), então {@link #getRange(long, int)} lê só o trecho pedido do disco.
+ */
 public class LogDAO {
-    static private String log;
-    //private static final String ARQUIVO = "database/log.txt"; 
-    private static final String ARQUIVO = "/app/database/log.txt"; 
+    //private static final String ARQUIVO = "database/log.txt";
+    private static final String ARQUIVO = "/app/database/log.txt";
+    private static final String PREFIXO_SEGMENTO = "log-";
+    private static final String ARQUIVO_BASE = "/app/database/log.idx"; // número da primeira linha de log.txt
+
+    private static final int CAPACIDADE = Integer.highestOneBit(Math.max(2,
+            Integer.parseInt(System.getenv().getOrDefault("LOG_BUFFER_SIZE", "16384"))));
+    private static final long INTERVALO_FLUSH_NS = TimeUnit.MILLISECONDS.toNanos(
+            Long.parseLong(System.getenv().getOrDefault("LOG_FLUSH_MS", "200")));
+    private static final long ESPERA_NS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final long BYTES_POR_SEGMENTO = Long.parseLong(System.getenv().getOrDefault("LOG_SEGMENT_BYTES", String.valueOf(8L * 1024 * 1024)));
+    private static final long IDADE_MAXIMA_SEGMENTO_MS = TimeUnit.HOURS.toMillis(
+            Long.parseLong(System.getenv().getOrDefault("LOG_SEGMENT_MAX_AGE_HOURS", "24")));
+    private static final int SEGMENTOS_MAXIMOS = Integer.parseInt(System.getenv().getOrDefault("LOG_MAX_SEGMENTS", "10"));
+    private static final long RETENCAO_MS = TimeUnit.DAYS.toMillis(
+            Long.parseLong(System.getenv().getOrDefault("LOG_RETENTION_DAYS", "7")));
+    private static final boolean COMPRIMIR = Boolean.parseBoolean(System.getenv().getOrDefault("LOG_COMPRESS", "false"));
+    private static final int LINHAS_EM_MEMORIA = Integer.parseInt(System.getenv().getOrDefault("LOG_TAIL_LINES", "1000"));
+
+    private static final int MASCARA = CAPACIDADE - 1;
+    private static final AtomicLongArray sequencias = new AtomicLongArray(CAPACIDADE);
+    private static final long[] tempos = new long[CAPACIDADE];
+    private static final String[] mensagens = new String[CAPACIDADE];
+    private static final AtomicLong cauda = new AtomicLong();
+    private static final LongAdder descartadas = new LongAdder();
+
+    // Só a thread de escrita mexe em cabeca; gravadas é quanto já chegou ao disco
+    private static long cabeca = 0;
+    private static volatile long gravadas = 0;
+
+    // Estado do arquivo ativo, usado só pela thread de escrita
+    private static Writer writer;
+    private static ContadorBytes contador;
+    private static long abertoEm;
+
+    // Índices de linha: segmentos fechados pela primeira linha, e o do arquivo ativo.
+    // ativoGravadas é quantas linhas do ativo já passaram do BufferedWriter para o arquivo.
+    private static final Object indices = new Object();
+    private static final TreeMap<Long, Segmento> segmentos = new TreeMap<>();
+    private static LogIndex ativo = new LogIndex(0);
+    private static long ativoGravadas = 0;
+
+    private static class Segmento {
+        final File arquivo; // ".txt"; depois da compressão só existe o ".txt.gz"
+        final LogIndex indice;
+
+        Segmento(File arquivo, LogIndex indice) {
+            this.arquivo = arquivo;
+            this.indice = indice;
+        }
+    }
+
+    // Últimas linhas gravadas, em um vetor circular
+    private static final String[] ultimasLinhas = new String[Math.max(1, LINHAS_EM_MEMORIA)];
+    private static long totalUltimasLinhas = 0;
+
+    // Compressão e limpeza de segmentos fechados ficam fora da thread de escrita
+    private static final ExecutorService MANUTENCAO = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Log-Maintenance-Thread");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Cache da parte "yyyy-MM-dd HH:mm:ss: " da data, que só muda a cada segundo
+    private static long segundoFormatado = Long.MIN_VALUE;
+    private static String dataFormatada;
+
+    private static final Thread ESCRITOR;
+
+    static {
+        for (int i = 0; i < CAPACIDADE; i++) {
+            sequencias.set(i, i);
+        }
+
+        carregarSegmentos();
+
+        ESCRITOR = new Thread(LogDAO::escrever, "Log-Writer-Thread");
+        ESCRITOR.setDaemon(true);
+        ESCRITOR.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(LogDAO::flush));
+        MANUTENCAO.submit(LogDAO::aplicarRetencao);
+    }
 
     public LogDAO() {
         loadLog();
     }
 
+    /**
+     * Garante que o arquivo de log existe; o conteúdo antigo é preservado e as novas linhas vão no fim.
+     */
     public static void loadLog() {
-        log = "";
-
-        // Carregar o arquivo "log.txt" ou criar um novo
         try {
-            File file = new File(ARQUIVO);
+            new File(ARQUIVO).createNewFile();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static void addLog(String log) {
+        long tempo = System.currentTimeMillis();
+
+        while (true) {
+            long posicao = cauda.get();
+            int indice = (int) posicao & MASCARA;
+            long diferenca = sequencias.get(indice) - posicao;
+
+            if (diferenca == 0) {
+                if (cauda.compareAndSet(posicao, posicao + 1)) {
+                    tempos[indice] = tempo;
+                    mensagens[indice] = log;
+                    sequencias.lazySet(indice, posicao + 1);
+                    return;
+                }
+            } else if (diferenca < 0) {
+                // Buffer cheio: a thread de escrita está atrás do disco
+                descartadas.increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Espera a thread de escrita gravar tudo o que foi enviado até agora.
+     */
+    public static void flush() {
+        long alvo = cauda.get();
+        while (gravadas < alvo && ESCRITOR.isAlive()) {
+            LockSupport.unpark(ESCRITOR);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Últimas linhas do log (no máximo {@code LOG_TAIL_LINES}), depois de gravar o que estava pendente.
+     */
+    public static String getLog() {
+        StringBuilder log = new StringBuilder();
+        for (String line : getTail(LINHAS_EM_MEMORIA)) {
+            log.append(line).append('\n');
+        }
+        return log.toString();
+    }
+
+    /**
+     * @return A linha de número {@code i}, ou null se ela não existe ou já saiu da retenção.
+     */
+    public static String getLine(long i) {
+        List<String> lines = getRange(i, 1);
+        return lines.isEmpty() || i < getFirstLine() ? null : lines.get(0);
+    }
+
+    /**
+     * Número da linha mais antiga ainda em disco.
+     */
+    public static long getFirstLine() {
+        synchronized (indices) {
+            return segmentos.isEmpty() ? ativo.primeira : segmentos.firstKey();
+        }
+    }
+
+    /**
+     * Quantidade de linhas já gravadas desde o início do log; também é o número da próxima linha.
+     */
+    public static long getLineCount() {
+        flush();
+        synchronized (indices) {
+            return ativo.primeira + ativoGravadas;
+        }
+    }
+
+    /**
+     * Até {@code limit} linhas a partir da linha {@code from}, lidas dos segmentos pelo índice.
+     * Linhas que já saíram da retenção são puladas.
+     */
+    public static List<String> getRange(long from, int limit) {
+        flush();
+        List<String> lines = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+        long linha = Math.max(0, from);
+
+        while (lines.size() < limit) {
+            long primeira;
+            long fim;
+            InputStream in;
+
+            synchronized (indices) {
+                Map.Entry<Long, Segmento> anterior = segmentos.floorEntry(linha);
+                Segmento segmento = anterior != null
+                        && linha < anterior.getKey() + anterior.getValue().indice.getLinhas() ? anterior.getValue() : null;
+
+                if (segmento == null && linha < ativo.primeira) {
+                    // Buraco deixado pela retenção: segue para o próximo arquivo existente
+                    Long proximo = segmentos.ceilingKey(linha);
+                    linha = proximo != null ? proximo : ativo.primeira;
+                    continue;
+                }
+
+                LogIndex indice = segmento != null ? segmento.indice : ativo;
+                primeira = indice.primeira;
+                fim = segmento != null ? primeira + indice.getLinhas() : primeira + ativoGravadas;
+                if (linha >= fim) {
+                    break;
+                }
 
-            if (!file.createNewFile()) {
-                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(ARQUIVO), "UTF-8"));
-                String line;
+                try {
+                    in = segmento != null ? abrirSegmento(segmento.arquivo) : new FileInputStream(ARQUIVO);
+                } catch (IOException e) {
+                    System.err.println("Falha ao abrir o log para leitura: " + e.getMessage());
+                    break;
+                }
+                long offset = indice.offsetAntes(linha);
+                primeira = linha - (linha - primeira) % LogIndex.PASSO;
+                try {
+                    in.skipNBytes(offset);
+                } catch (IOException e) {
+                    fecharLeitura(in);
+                    System.err.println("Falha ao posicionar a leitura do log: " + e.getMessage());
+                    break;
+                }
+            }
 
-                while ((line = bufferedReader.readLine()) != null) {
-                    log += line + "\n";
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                for (long atual = primeira; atual < fim && lines.size() < limit; atual++) {
+                    String texto = reader.readLine();
+                    if (texto == null) {
+                        fim = atual;
+                        break;
+                    }
+                    if (atual >= linha) {
+                        lines.add(texto);
+                    }
                 }
+            } catch (IOException e) {
+                System.err.println("Falha ao ler o log: " + e.getMessage());
+                break;
+            }
+            linha = fim;
+        }
+        return lines;
+    }
+
+    /**
+     * Página do log pronta para serializar em JSON: linhas a partir de {@code from} e o cursor da próxima.
+     */
+    public static Map<String, Object> getPage(long from, int limit) {
+        long primeira = getFirstLine();
+        long inicio = Math.max(from, primeira);
+        List<String> lines = getRange(inicio, limit);
+
+        Map<String, Object> pagina = new LinkedHashMap<>();
+        pagina.put("first", primeira);
+        pagina.put("total", getLineCount());
+        pagina.put("from", inicio);
+        pagina.put("next", inicio + lines.size());
+        pagina.put("lines", lines);
+        return pagina;
+    }
+
+    /**
+     * Página com as {@code n} últimas linhas gravadas em disco.
+     */
+    public static Map<String, Object> getTailPage(int n) {
+        return getPage(Math.max(0, getLineCount() - n), n);
+    }
 
-                bufferedReader.close();
+    /**
+     * As {@code n} linhas mais recentes, da mais antiga para a mais nova.
+     */
+    public static List<String> getTail(int n) {
+        flush();
+        synchronized (ultimasLinhas) {
+            int quantidade = (int) Math.min(Math.min(n, ultimasLinhas.length), totalUltimasLinhas);
+            List<String> lines = new ArrayList<>(Math.max(0, quantidade));
+            for (long i = totalUltimasLinhas - quantidade; i < totalUltimasLinhas; i++) {
+                lines.add(ultimasLinhas[(int) (i % ultimasLinhas.length)]);
+            }
+            return lines;
+        }
+    }
+
+    private static void escrever() {
+        long ultimoFlush = System.nanoTime();
+        long proximaAbertura = ultimoFlush;
+        boolean pendente = false;
+
+        while (true) {
+            try {
+                if (writer == null && System.nanoTime() - proximaAbertura >= 0) {
+                    abrir();
+                    proximaAbertura = System.nanoTime() + INTERVALO_FLUSH_NS;
+                }
+
+                int lidas = drenar();
+                pendente |= lidas > 0;
+
+                if (pendente && (lidas == 0 || System.nanoTime() - ultimoFlush > INTERVALO_FLUSH_NS)) {
+                    if (writer != null) {
+                        writer.flush();
+                        synchronized (indices) {
+                            ativoGravadas = ativo.getLinhas();
+                        }
+                        if (precisaRotacionar()) {
+                            rotacionar();
+                        }
+                    }
+                    gravadas = cabeca;
+                    ultimoFlush = System.nanoTime();
+                    pendente = false;
+                }
+
+                if (lidas == 0) {
+                    LockSupport.parkNanos(ESPERA_NS);
+                }
+            } catch (IOException e) {
+                System.err.println("Falha ao gravar o log: " + e.getMessage());
+                fechar();
+                gravadas = cabeca;
+                LockSupport.parkNanos(INTERVALO_FLUSH_NS);
+            }
+        }
+    }
+
+    /**
+     * Copia para o writer o que está publicado no buffer, no máximo uma volta dele por chamada para
+     * que o flush periódico aconteça mesmo sob carga contínua. Sem arquivo, as linhas são descartadas.
+     */
+    private static int drenar() throws IOException {
+        int lidas = 0;
+        StringBuilder linha = new StringBuilder(128);
+
+        long perdidas = descartadas.sumThenReset();
+        if (perdidas > 0) {
+            formatarData(linha, System.currentTimeMillis()).append("[LOG] ").append(perdidas)
+                    .append(" mensagens descartadas com o buffer cheio");
+            gravarLinha(linha.toString());
+        }
+
+        while (lidas < CAPACIDADE) {
+            int indice = (int) cabeca & MASCARA;
+            if (sequencias.get(indice) != cabeca + 1) {
+                return lidas;
+            }
+
+            long tempo = tempos[indice];
+            String mensagem = mensagens[indice];
+            mensagens[indice] = null;
+            sequencias.lazySet(indice, cabeca + CAPACIDADE);
+            cabeca++;
+            lidas++;
+
+            linha.setLength(0);
+            formatarData(linha, tempo).append(mensagem);
+            gravarLinha(linha.toString());
+        }
+        return lidas;
+    }
+
+    private static void gravarLinha(String texto) throws IOException {
+        // Uma mensagem vira sempre uma linha, senão a numeração do índice não bate com o arquivo
+        if (texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            texto = texto.replace('\n', ' ').replace('\r', ' ');
+        }
+
+        guardarNaMemoria(texto);
+        if (writer != null) {
+            writer.write(texto);
+            writer.write('\n');
+            synchronized (indices) {
+                ativo.adicionar(tamanhoUtf8(texto) + 1);
+            }
+        }
+    }
+
+    private static void guardarNaMemoria(String linha) {
+        synchronized (ultimasLinhas) {
+            ultimasLinhas[(int) (totalUltimasLinhas % ultimasLinhas.length)] = linha;
+            totalUltimasLinhas++;
+        }
+    }
+
+    /**
+     * Abre log.txt para append e refaz o índice dele, que é limitado pelo tamanho de um segmento.
+     */
+    private static void abrir() {
+        File file = new File(ARQUIVO);
+        try {
+            LogIndex indice = LogIndex.construir(file, lerBase());
+            contador = new ContadorBytes(new FileOutputStream(file, true), file.length());
+            writer = new BufferedWriter(new OutputStreamWriter(contador, StandardCharsets.UTF_8), 1 << 16);
+            abertoEm = criadoEm(file.toPath());
+            synchronized (indices) {
+                ativo = indice;
+                ativoGravadas = indice.getLinhas();
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            writer = null;
         }
     }
 
-    public static void addLog(String log) {
-        Date date = new Date();
+    private static void fechar() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // O arquivo será reaberto na próxima volta
+        }
+        writer = null;
+    }
 
-        // Format the date
-        String formattedDate = String.format("%tF %tT", date, date);
+    private static boolean precisaRotacionar() {
+        if (contador.bytes == 0) {
+            return false;
+        }
+        return contador.bytes >= BYTES_POR_SEGMENTO || System.currentTimeMillis() - abertoEm >= IDADE_MAXIMA_SEGMENTO_MS;
+    }
 
-        LogDAO.log += formattedDate + ": " + log + "\n";
+    /**
+     * Fecha o arquivo ativo, renomeia para um segmento com a data e abre um log.txt vazio.
+     */
+    private static void rotacionar() throws IOException {
+        fechar();
+
+        File diretorio = new File(ARQUIVO).getParentFile();
+        // Contador de largura fixa para mais de uma rotação no mesmo segundo manter a ordem dos nomes
+        String nome = PREFIXO_SEGMENTO + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        File segmento = null;
+        for (int i = 0; segmento == null || segmento.exists() || new File(segmento.getPath() + ".gz").exists(); i++) {
+            segmento = new File(diretorio, String.format("%s-%03d.txt", nome, i));
+        }
+
+        ativo.gravar(arquivoIndice(segmento));
+        long base = ativo.primeira + ativo.getLinhas();
+        synchronized (indices) {
+            Files.move(Paths.get(ARQUIVO), segmento.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            segmentos.put(ativo.primeira, new Segmento(segmento, ativo));
+            ativo = new LogIndex(base);
+            ativoGravadas = 0;
+        }
+        gravarBase(base);
+        abrir();
+
+        File fechado = segmento;
+        MANUTENCAO.submit(() -> {
+            if (COMPRIMIR) {
+                comprimir(fechado);
+            }
+            aplicarRetencao();
+        });
+    }
+
+    private static void comprimir(File segmento) {
+        File comprimido = new File(segmento.getPath() + ".gz");
+        File temporario = new File(segmento.getPath() + ".gz.tmp");
+        try (InputStream in = new FileInputStream(segmento);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(temporario), 1 << 16)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Falha ao comprimir o segmento de log " + segmento.getName() + ": " + e.getMessage());
+            temporario.delete();
+            return;
+        }
 
-        // Salvar no arquivo "log.txt" com utf-8
         try {
-            BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(ARQUIVO), "UTF-8"));
-            bufferedWriter.write(LogDAO.log);
-            bufferedWriter.close();
+            Files.move(temporario.toPath(), comprimido.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segmento.toPath());
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("Falha ao substituir o segmento de log " + segmento.getName() + ": " + e.getMessage());
         }
     }
 
-    
-    public static String getLog() {
-        return log;
+    /**
+     * Segmentos fechados, do mais antigo para o mais novo (o nome começa pela data).
+     */
+    static File[] listarSegmentos() {
+        File[] segmentos = new File(ARQUIVO).getParentFile().listFiles((dir, nome) ->
+                nome.startsWith(PREFIXO_SEGMENTO) && (nome.endsWith(".txt") || nome.endsWith(".txt.gz")));
+        if (segmentos == null) {
+            return new File[0];
+        }
+        Arrays.sort(segmentos, (a, b) -> a.getName().compareTo(b.getName()));
+        return segmentos;
     }
 
+    private static void aplicarRetencao() {
+        File[] arquivos = listarSegmentos();
+        long limite = System.currentTimeMillis() - RETENCAO_MS;
 
-    public static String getLine(int i) {
-        String[] lines = log.split("\n");
+        for (int i = 0; i < arquivos.length; i++) {
+            boolean excedente = i < arquivos.length - SEGMENTOS_MAXIMOS;
+            if (excedente || arquivos[i].lastModified() < limite) {
+                File texto = arquivoTexto(arquivos[i]);
+                synchronized (indices) {
+                    segmentos.values().removeIf(segmento -> segmento.arquivo.equals(texto));
+                }
+                if (!arquivos[i].delete()) {
+                    System.err.println("Não foi possível remover o segmento de log " + arquivos[i].getName());
+                }
+                arquivoIndice(arquivos[i]).delete();
+            }
+        }
+    }
 
-        if (i < 0 || i >= lines.length) {
-            return null;
+    /**
+     * Carrega o índice dos segmentos fechados. Segmentos sem ".idx" ficam fora das leituras por linha.
+     */
+    private static void carregarSegmentos() {
+        for (File arquivo : listarSegmentos()) {
+            File idx = arquivoIndice(arquivo);
+            if (!idx.exists()) {
+                continue;
+            }
+            try {
+                LogIndex indice = LogIndex.ler(idx);
+                segmentos.put(indice.primeira, new Segmento(arquivoTexto(arquivo), indice));
+            } catch (IOException e) {
+                System.err.println("Índice de log inválido ignorado: " + idx.getName());
+            }
         }
+    }
 
-        return lines[i];
+    /**
+     * Número da primeira linha de log.txt: o gravado na última rotação ou o fim do último segmento.
+     */
+    private static long lerBase() {
+        long base = 0;
+        synchronized (indices) {
+            if (!segmentos.isEmpty()) {
+                LogIndex ultimo = segmentos.lastEntry().getValue().indice;
+                base = ultimo.primeira + ultimo.getLinhas();
+            }
+        }
+
+        File arquivo = new File(ARQUIVO_BASE);
+        if (arquivo.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(arquivo))) {
+                base = Math.max(base, in.readLong());
+            } catch (IOException e) {
+                System.err.println("Falha ao ler " + ARQUIVO_BASE + ": " + e.getMessage());
+            }
+        }
+        return base;
+    }
+
+    private static void gravarBase(long base) {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(ARQUIVO_BASE))) {
+            out.writeLong(base);
+        } catch (IOException e) {
+            System.err.println("Falha ao gravar " + ARQUIVO_BASE + ": " + e.getMessage());
+        }
+    }
+
+    private static InputStream abrirSegmento(File texto) throws IOException {
+        try {
+            return new FileInputStream(texto);
+        } catch (FileNotFoundException e) {
+            // Já foi comprimido; os offsets do índice valem para o conteúdo descomprimido
+            return new GZIPInputStream(new FileInputStream(texto.getPath() + ".gz"), 1 << 16);
+        }
+    }
+
+    private static void fecharLeitura(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Nada a fazer
+        }
+    }
+
+    private static File arquivoTexto(File segmento) {
+        String nome = segmento.getPath();
+        return nome.endsWith(".gz") ? new File(nome.substring(0, nome.length() - 3)) : segmento;
+    }
+
+    private static File arquivoIndice(File segmento) {
+        String nome = arquivoTexto(segmento).getPath();
+        return new File(nome.substring(0, nome.length() - ".txt".length()) + ".idx");
+    }
+
+    private static int tamanhoUtf8(String texto) {
+        int tamanho = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                tamanho++;
+            } else if (c < 0x800) {
+                tamanho += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                tamanho += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                tamanho++; // substituto solto vira '?' no encoder UTF-8
+            } else {
+                tamanho += 3;
+            }
+        }
+        return tamanho;
+    }
+
+    private static long criadoEm(Path arquivo) {
+        try {
+            return Files.readAttributes(arquivo, BasicFileAttributes.class).creationTime().toMillis();
+        } catch (IOException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Conta os bytes que passam para o arquivo, para saber quando o segmento ativo encheu.
+     */
+    private static class ContadorBytes extends FilterOutputStream {
+        long bytes;
+
+        ContadorBytes(OutputStream out, long inicial) {
+            super(out);
+            this.bytes = inicial;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes += len;
+        }
+    }
+
+    private static StringBuilder formatarData(StringBuilder linha, long tempo) {
+        long segundo = Math.floorDiv(tempo, 1000);
+        if (segundo != segundoFormatado) {
+            Date date = new Date(tempo);
+            dataFormatada = String.format("%tF %tT: ", date, date);
+            segundoFormatado = segundo;
+        }
+        return linha.append(dataFormatada);
     }
 }
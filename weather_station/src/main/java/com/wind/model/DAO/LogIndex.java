@@ -0,0 +1,110 @@
+package com.wind.model.DAO;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Índice de linhas de um arquivo de log: guarda o offset em bytes de uma a cada {@code PASSO} linhas,
+ * então achar a linha n custa um seek mais no máximo {@code PASSO - 1} linhas puladas.
+ *
+ * Linhas são numeradas globalmente; {@code primeira} é o número da primeira linha do arquivo.
+ * Só a thread de escrita do LogDAO chama {@link #adicionar(long)}; offsets já gravados nunca mudam.
+ *
+ * Formato do arquivo ".idx": [primeira:8][linhas:8][bytes:8][quantidade:4][offsets:8...]
+ */
+class LogIndex {
+    static final int PASSO = 1024;
+
+    final long primeira;
+    private long linhas;
+    private long bytes;
+    private long[] offsets;
+
+    LogIndex(long primeira) {
+        this(primeira, 0, 0, new long[16]);
+    }
+
+    private LogIndex(long primeira, long linhas, long bytes, long[] offsets) {
+        this.primeira = primeira;
+        this.linhas = linhas;
+        this.bytes = bytes;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Registra uma linha de {@code tamanho} bytes, já contando o '\n'.
+     */
+    void adicionar(long tamanho) {
+        if (linhas % PASSO == 0) {
+            int posicao = (int) (linhas / PASSO);
+            if (posicao == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[posicao] = bytes;
+        }
+        bytes += tamanho;
+        linhas++;
+    }
+
+    long getLinhas() {
+        return linhas;
+    }
+
+    /**
+     * Offset do ponto de partida mais próximo antes de {@code linha} (numeração global).
+     * O leitor ainda precisa pular {@code (linha - primeira) % PASSO} linhas a partir dele.
+     */
+    long offsetAntes(long linha) {
+        return offsets[(int) ((linha - primeira) / PASSO)];
+    }
+
+    /**
+     * Índice de um arquivo já existente, lido do começo ao fim.
+     */
+    static LogIndex construir(File arquivo, long primeira) throws IOException {
+        LogIndex indice = new LogIndex(primeira);
+        if (!arquivo.exists()) {
+            return indice;
+        }
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(arquivo), 1 << 16)) {
+            long tamanho = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                tamanho++;
+                if (b == '\n') {
+                    indice.adicionar(tamanho);
+                    tamanho = 0;
+                }
+            }
+        }
+        return indice;
+    }
+
+    void gravar(File arquivo) throws IOException {
+        int quantidade = (int) ((linhas + PASSO - 1) / PASSO);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivo)))) {
+            out.writeLong(primeira);
+            out.writeLong(linhas);
+            out.writeLong(bytes);
+            out.writeInt(quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                out.writeLong(offsets[i]);
+            }
+        }
+    }
+
+    static LogIndex ler(File arquivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivo)))) {
+            long primeira = in.readLong();
+            long linhas = in.readLong();
+            long bytes = in.readLong();
+            int quantidade = in.readInt();
+            long[] offsets = new long[Math.max(16, quantidade)];
+            for (int i = 0; i < quantidade; i++) {
+                offsets[i] = in.readLong();
+            }
+            return new LogIndex(primeira, linhas, bytes, offsets);
+        }
+    }
+}
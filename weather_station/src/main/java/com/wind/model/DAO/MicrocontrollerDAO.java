@@ -1,27 +1,39 @@
 package com.wind.model.DAO;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.wind.datastructures.Hash;
 import com.wind.entities.MicrocontrollerEntity;
+import com.wind.message.WeatherCodec;
+import com.wind.model.DAO.EventLog.Level;
 
 public class MicrocontrollerDAO {
+    private static final EventLog.Category LOG = EventLog.category("mc");
+
     private Hash<MicrocontrollerEntity> microcontrollerHash;
     private int ocupacao;
 
     // private final String FILE_PATH = "database/microcontrollers.dat";
     private final String FILE_PATH = "/app/database/microcontrollers.dat";
     private final int INITIAL_SIZE = 100;
+    private static final int FILE_MAGIC = 0x574E4D43; // "WNMC"
 
     public MicrocontrollerDAO() {
-        microcontrollerHash = new Hash<>(INITIAL_SIZE);
+        microcontrollerHash = new Hash<>("microcontrollers", INITIAL_SIZE);
         loadDatabase();
         ocupacao = microcontrollerHash.getOcupacao();
     }
@@ -40,10 +52,10 @@ public class MicrocontrollerDAO {
     public MicrocontrollerEntity getMicrocontroller(int id) {
         MicrocontrollerEntity mc = microcontrollerHash.buscar(id);
         if (mc == null) {
-            LogDAO.addLog("[MC MISS] Microcontroller " + id + " not found.");
+            LOG.event(Level.INFO, "miss", "id", id);
             return null;
         }
-        LogDAO.addLog("[MC HIT] Microcontroller " + id + " found.");
+        LOG.event(Level.DEBUG, "hit", "id", id);
         return mc;
     }
 
@@ -79,23 +91,22 @@ public class MicrocontrollerDAO {
         }
     }
 
-    @SuppressWarnings("unchecked")
     private void loadDatabase() {
         try {
             File file = new File(FILE_PATH);
-            if (file.exists()) {
-                FileInputStream fis = new FileInputStream(file);
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                microcontrollerHash = (Hash<MicrocontrollerEntity>) ois.readObject();
-                ois.close();
-                fis.close();
+            if (file.exists() && file.length() > 0) {
+                if (isLegacyFile(file)) {
+                    loadLegacyDatabase(file);
+                    updateFile(); // Regrava no formato binário
+                } else {
+                    loadBinaryDatabase(file);
+                }
                 LogDAO.addLog("[DB LOAD] Database loaded successfully.");
             } else {
                 File parent = file.getParentFile();
                 if (parent != null && !parent.exists()) {
                     parent.mkdirs();
                 }
-                file.createNewFile();
                 updateFile(); // Initialize empty file
                 LogDAO.addLog("[DB INIT] New database created.");
             }
@@ -105,13 +116,69 @@ public class MicrocontrollerDAO {
         }
     }
 
+    /**
+     * File layout: [magic][count] followed by [length][WeatherCodec microcontroller] per entry.
+     */
+    private void loadBinaryDatabase(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Unknown microcontroller database format");
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                MicrocontrollerEntity mc = WeatherCodec.decodeMicrocontroller(ByteBuffer.wrap(record));
+                microcontrollerHash.inserir(mc.getId(), mc);
+            }
+        }
+    }
+
+    /**
+     * Files written before the binary codec hold the whole Hash through ObjectOutputStream.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadLegacyDatabase(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new com.wind.datastructures.legacy.Hash.InputStream(new FileInputStream(file))) {
+            for (MicrocontrollerEntity mc : ((com.wind.datastructures.legacy.Hash<MicrocontrollerEntity>) ois.readObject()).getAll()) {
+                microcontrollerHash.inserir(mc.getId(), mc);
+            }
+        }
+    }
+
+    private boolean isLegacyFile(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readShort() == ObjectStreamConstants.STREAM_MAGIC;
+        }
+    }
+
     private void updateFile() {
+        File target = new File(FILE_PATH);
+        File temp = new File(FILE_PATH + ".tmp");
+
         try {
-            FileOutputStream fos = new FileOutputStream(FILE_PATH);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(microcontrollerHash);
-            oos.close();
-            fos.close();
+            List<MicrocontrollerEntity> all = new ArrayList<>();
+            for (MicrocontrollerEntity mc : microcontrollerHash) {
+                if (mc != null) {
+                    all.add(mc);
+                }
+            }
+
+            try (FileOutputStream fos = new FileOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(all.size());
+                for (MicrocontrollerEntity mc : all) {
+                    byte[] record = WeatherCodec.encode(mc);
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+                out.flush();
+                fos.getFD().sync();
+            }
+
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             LogDAO.addLog("[DB ERROR] Error saving database: " + e.getMessage());
             e.printStackTrace();
@@ -4,19 +4,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.wind.datastructures.HashMetrics;
 import com.wind.entities.MicrocontrollerEntity;
+import com.wind.model.DAO.LogDAO;
 import com.wind.model.DAO.MicrocontrollerDAO;
 import com.wind.security.RSA;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ManagementService {
+    private static final int LOG_LIMIT_DEFAULT = 100;
+    private static final int LOG_LIMIT_MAX = 5000;
 
     private final int port;
     private final MicrocontrollerDAO microcontrollerDAO;
@@ -41,6 +47,9 @@ public class ManagementService {
         server.createContext("/weather/microcontrollers", new MicrocontrollerHandler());
         server.createContext("/weather/security/public-key", new PublicKeyHandler());
         server.createContext("/weather/security/handshake", new HandshakeHandler());
+        server.createContext("/weather/metrics/hash", new HashMetricsHandler());
+        server.createContext("/weather/logs", new LogHandler());
+        server.createContext("/weather/metrics/sinks", new SinkMetricsHandler());
         server.setExecutor(null); // creates a default executor
         server.start();
         System.out.println("[Management Service] Started on port " + port);
@@ -116,11 +125,88 @@ public class ManagementService {
         }
     }
 
+    private class HashMetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 200, objectMapper.writeValueAsString(HashMetrics.snapshotAll()));
+            } else {
+                sendResponse(exchange, 405, "Method not allowed");
+            }
+        }
+    }
+
+    private class SinkMetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 200, objectMapper.writeValueAsString(SinkQueue.snapshotAll()));
+            } else {
+                sendResponse(exchange, 405, "Method not allowed");
+            }
+        }
+    }
+
+    /**
+     * GET /weather/logs?from=N&limit=M pagina o log pelo número da linha;
+     * GET /weather/logs/tail?lines=M devolve as últimas linhas.
+     */
+    private class LogHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method not allowed");
+                return;
+            }
+
+            Map<String, String> params = queryParams(exchange);
+            String path = exchange.getRequestURI().getPath();
+            try {
+                if (path.equals("/weather/logs/tail")) {
+                    int lines = Integer.parseInt(params.getOrDefault("lines", String.valueOf(LOG_LIMIT_DEFAULT)));
+                    if (lines < 1 || lines > LOG_LIMIT_MAX) {
+                        sendResponse(exchange, 400, "lines must be between 1 and " + LOG_LIMIT_MAX);
+                        return;
+                    }
+                    sendResponse(exchange, 200, objectMapper.writeValueAsString(LogDAO.getTailPage(lines)));
+                } else if (path.equals("/weather/logs") || path.equals("/weather/logs/")) {
+                    long from = Long.parseLong(params.getOrDefault("from", "0"));
+                    int limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(LOG_LIMIT_DEFAULT)));
+                    if (from < 0 || limit < 1 || limit > LOG_LIMIT_MAX) {
+                        sendResponse(exchange, 400, "from must be >= 0 and limit between 1 and " + LOG_LIMIT_MAX);
+                        return;
+                    }
+                    sendResponse(exchange, 200, objectMapper.writeValueAsString(LogDAO.getPage(from, limit)));
+                } else {
+                    sendResponse(exchange, 404, "Not found");
+                }
+            } catch (NumberFormatException e) {
+                sendResponse(exchange, 400, "Numeric parameters expected");
+            }
+        }
+    }
+
+    private Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String[] pair = param.split("=");
+                if (pair.length == 2) {
+                    params.put(pair[0], pair[1]);
+                }
+            }
+        }
+        return params;
+    }
+
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
+        // Content-Length em bytes: linhas de log têm acentos
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
         exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, response.length());
+        exchange.sendResponseHeaders(statusCode, body.length);
         OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
+        os.write(body);
         os.close();
     }
 
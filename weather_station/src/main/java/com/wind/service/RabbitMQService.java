@@ -1,14 +1,21 @@
 package com.wind.service;
 
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 
+import com.wind.entities.WeatherData;
+import com.wind.message.WeatherCodec;
+import com.wind.model.DAO.EventLog;
+import com.wind.model.DAO.EventLog.Level;
+
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeoutException;
 
 public class RabbitMQService {
+    private static final EventLog.Category LOG = EventLog.category("rabbitmq");
 
     private final String host;
     private final String user;
@@ -55,17 +62,48 @@ public class RabbitMQService {
         }
     }
 
-    public void publish(String payload) {
+    /**
+     * @return false if the channel is unavailable or the publish failed, so the caller can retry.
+     */
+    public boolean publish(String payload) {
+        try {
+            if (channel != null && channel.isOpen()) {
+                // A Channel must not be used by two threads at once, and ingress has several workers
+                synchronized (channel) {
+                    channel.basicPublish(exchangeName, "", null, payload.getBytes(StandardCharsets.UTF_8));
+                }
+                LOG.event(Level.DEBUG, "published", "exchange", exchangeName);
+                return true;
+            }
+            LOG.event(Level.WARN, "publish_unavailable");
+        } catch (IOException e) {
+            LOG.event(Level.WARN, "publish_error", "error", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Publishes the reading encoded with {@link WeatherCodec}, tagged with its content type
+     * so consumers can tell it apart from the legacy pipe-separated text payload.
+     */
+    public boolean publish(WeatherData weather) {
         try {
             if (channel != null && channel.isOpen()) {
-                channel.basicPublish(exchangeName, "", null, payload.getBytes(StandardCharsets.UTF_8));
-                System.out.println("<- [RABBITMQ] Published to exchange: " + exchangeName);
-            } else {
-                System.err.println("[RABBITMQ] Cannot publish, channel not available.");
+                AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                        .contentType(WeatherCodec.CONTENT_TYPE)
+                        .build();
+                byte[] body = WeatherCodec.encode(weather);
+                synchronized (channel) {
+                    channel.basicPublish(exchangeName, "", properties, body);
+                }
+                LOG.event(Level.DEBUG, "published", "exchange", exchangeName);
+                return true;
             }
+            LOG.event(Level.WARN, "publish_unavailable");
         } catch (IOException e) {
-            System.err.println("[RABBITMQ] Error publishing to RabbitMQ: " + e.getMessage());
+            LOG.event(Level.WARN, "publish_error", "error", e.getMessage());
         }
+        return false;
     }
 
     public void close() {
@@ -0,0 +1,546 @@
+package com.wind.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.wind.model.DAO.EventLog;
+import com.wind.model.DAO.EventLog.Level;
+
+/**
+ * One output of the station (UDP feed, broker, ...) behind its own bounded queue and sender thread,
+ * so a slow or unavailable sink only fills its own queue instead of stalling ingest or the other sinks.
+ *
+ * Configured per sink from the environment: SINK_&lt;NAME&gt;_CAPACITY and SINK_&lt;NAME&gt;_POLICY.
+ * When the queue is full the policy decides:
+ * BLOCK waits for room, DROP_OLDEST discards the oldest queued item, and SPILL appends to
+ * SINK_SPILL_DIR/&lt;name&gt;.spill. Once something is spilled, new items go to the file too until it
+ * is drained, so delivery order is kept; spilled items survive a restart.
+ *
+ * The spill is a bounded buffer, not lossless storage: once the pending records reach
+ * SINK_SPILL_MAX_BYTES new items are dropped and counted. The consumed head of the file is compacted
+ * away as it is read, so a sink that keeps up does not grow the file.
+ *
+ * A failed send is retried with backoff and keeps its place. {@link #snapshotAll()} reports depth,
+ * counters and lag (time between enqueue and send) per sink.
+ */
+public class SinkQueue<T> {
+    private static final EventLog.Category LOG = EventLog.category("sink");
+    private static final Map<String, SinkQueue<?>> SINKS = new ConcurrentHashMap<>();
+
+    private static final String SPILL_DIR = System.getenv().getOrDefault("SINK_SPILL_DIR", "/app/database/spill");
+    private static final long SPILL_MAX_BYTES = Long.parseLong(System.getenv().getOrDefault("SINK_SPILL_MAX_BYTES", String.valueOf(256L * 1024 * 1024)));
+    private static final long RETRY_MIN_MS = 50;
+    private static final long RETRY_MAX_MS = 5000;
+    private static final int SPILL_HEADER = Long.BYTES; // read position, so a restart resumes where it stopped
+    // The file is rewritten without its consumed head once that head passes this size and outweighs what is pending
+    private static final long SPILL_COMPACT_BYTES = Long.parseLong(System.getenv().getOrDefault("SINK_SPILL_COMPACT_BYTES", String.valueOf(16L * 1024 * 1024)));
+
+    public enum OverflowPolicy { BLOCK, DROP_OLDEST, SPILL }
+
+    @FunctionalInterface
+    public interface Sender<T> {
+        /** @return false if the item could not be delivered and should be retried. */
+        boolean send(T item);
+    }
+
+    public interface Codec<T> {
+        byte[] encode(T item);
+
+        T decode(byte[] data);
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final long enqueuedAt;
+
+        Entry(T item, long enqueuedAt) {
+            this.item = item;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final String name;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Sender<T> sender;
+    private final Codec<T> codec;
+
+    private final ArrayDeque<Entry<T>> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private volatile boolean running = true;
+    private boolean closed = false;
+    private Entry<T> inFlight; // taken by the sender and not yet delivered; guarded by lock
+    private final Thread thread;
+
+    // Spill file: [read position:8] then records [length:4][enqueued at:8][data]
+    private Path spillPath;
+    private FileChannel spill;
+    private long spillReadPos = SPILL_HEADER;
+    private long spillWritePos = SPILL_HEADER;
+    private long spillRecords = 0;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private volatile long lastLagMs = 0;
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private volatile long inFlightSince = 0;
+
+    /**
+     * @param codec Only needed for {@link OverflowPolicy#SPILL}; may be null otherwise.
+     */
+    public SinkQueue(String name, int defaultCapacity, OverflowPolicy defaultPolicy, Sender<T> sender, Codec<T> codec) {
+        String key = name.toUpperCase(Locale.ROOT);
+        this.name = name;
+        this.capacity = Integer.parseInt(System.getenv().getOrDefault("SINK_" + key + "_CAPACITY", String.valueOf(defaultCapacity)));
+        OverflowPolicy configured = OverflowPolicy.valueOf(
+                System.getenv().getOrDefault("SINK_" + key + "_POLICY", defaultPolicy.name()).toUpperCase(Locale.ROOT));
+        this.sender = sender;
+        this.codec = codec;
+
+        if (configured == OverflowPolicy.SPILL && codec == null) {
+            System.err.println("[Sink " + name + "] SPILL needs a codec, falling back to DROP_OLDEST.");
+            configured = OverflowPolicy.DROP_OLDEST;
+        }
+        if (configured == OverflowPolicy.SPILL && !openSpill()) {
+            configured = OverflowPolicy.DROP_OLDEST;
+        }
+        this.policy = configured;
+
+        this.thread = new Thread(this::run, "sink-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+        SINKS.put(name, this);
+        System.out.println("[Sink " + name + "] capacity " + capacity + ", overflow " + policy
+                + (spillRecords > 0 ? ", " + spillRecords + " spilled item(s) pending" : ""));
+    }
+
+    /**
+     * Hands an item to the sink. Never blocks unless the policy is BLOCK.
+     */
+    public void offer(T item) {
+        Entry<T> entry = new Entry<>(item, System.currentTimeMillis());
+        lock.lock();
+        try {
+            if (!running) {
+                dropped.increment();
+                return;
+            }
+            if (policy == OverflowPolicy.SPILL && spillRecords > 0) {
+                spill(entry);
+                return;
+            }
+
+            while (queue.size() >= capacity) {
+                switch (policy) {
+                    case BLOCK:
+                        notFull.awaitUninterruptibly();
+                        if (!running) {
+                            dropped.increment();
+                            return;
+                        }
+                        break;
+                    case DROP_OLDEST:
+                        queue.poll();
+                        dropped.increment();
+                        break;
+                    case SPILL:
+                        spill(entry);
+                        return;
+                }
+            }
+
+            queue.add(entry);
+            enqueued.increment();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            Entry<T> entry;
+            lock.lock();
+            try {
+                while (running && queue.isEmpty() && spillRecords == 0) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (!running) {
+                    return;
+                }
+                // Queued items are older than anything in the spill file
+                entry = !queue.isEmpty() ? queue.poll() : readSpill();
+                inFlight = entry;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            if (entry != null) {
+                deliver(entry);
+            }
+        }
+    }
+
+    private void deliver(Entry<T> entry) {
+        inFlightSince = entry.enqueuedAt;
+        long backoff = RETRY_MIN_MS;
+        while (!send(entry.item)) {
+            retries.increment();
+            LOG.event(Level.WARN, "retry", "sink", name, "backoffMs", backoff);
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!running) {
+                requeueOnClose(entry);
+                inFlightSince = 0;
+                return;
+            }
+            backoff = Math.min(RETRY_MAX_MS, backoff * 2);
+        }
+        inFlightSince = 0;
+
+        lock.lock();
+        try {
+            inFlight = null;
+        } finally {
+            lock.unlock();
+        }
+
+        long lag = System.currentTimeMillis() - entry.enqueuedAt;
+        lastLagMs = lag;
+        maxLagMs.accumulateAndGet(lag, Math::max);
+        sent.increment();
+    }
+
+    private boolean send(T item) {
+        try {
+            return sender.send(item);
+        } catch (RuntimeException e) {
+            LOG.event(Level.ERROR, "send_error", "sink", name, "error", e.toString());
+            return false;
+        }
+    }
+
+    private boolean openSpill() {
+        File dir = new File(SPILL_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            System.err.println("[Sink " + name + "] Could not create spill directory " + SPILL_DIR);
+            return false;
+        }
+
+        try {
+            spillPath = new File(dir, name + ".spill").toPath();
+            spill = FileChannel.open(spillPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recoverSpill();
+            return true;
+        } catch (IOException e) {
+            System.err.println("[Sink " + name + "] Could not open spill file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Picks up items left by a previous run: resumes at the saved read position and counts
+     * complete records, ignoring a torn record at the end.
+     */
+    private void recoverSpill() throws IOException {
+        long size = spill.size();
+        if (size < SPILL_HEADER) {
+            resetSpill();
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+        spill.read(header, 0);
+        long position = header.flip().getLong();
+        if (position < SPILL_HEADER || position > size) {
+            position = SPILL_HEADER;
+        }
+
+        spillReadPos = position;
+        spillRecords = 0;
+        while (position + header.capacity() <= size) {
+            header.clear();
+            spill.read(header, position);
+            int length = header.flip().getInt();
+            if (length < 0 || position + header.capacity() + length > size) {
+                break;
+            }
+            position += header.capacity() + length;
+            spillRecords++;
+        }
+        spillWritePos = position;
+
+        if (spillRecords == 0) {
+            resetSpill();
+        }
+    }
+
+    // Called with the lock held
+    private void spill(Entry<T> entry) {
+        byte[] data = codec.encode(entry.item);
+        int recordSize = Integer.BYTES + Long.BYTES + data.length;
+        if (spillWritePos - spillReadPos + recordSize > SPILL_MAX_BYTES) {
+            dropped.increment();
+            LOG.event(Level.WARN, "spill_full", "sink", name);
+            return;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(data.length).putLong(entry.enqueuedAt).put(data).flip();
+        // The record only counts once it is fully written; a failed write is cut off so no torn record is left
+        long position = spillWritePos;
+        try {
+            while (record.hasRemaining()) {
+                position += spill.write(record, position);
+            }
+            spillWritePos = position;
+            spillRecords++;
+            spilled.increment();
+            enqueued.increment();
+            notEmpty.signal();
+        } catch (IOException e) {
+            dropped.increment();
+            LOG.event(Level.ERROR, "spill_error", "sink", name, "error", e.getMessage());
+            try {
+                spill.truncate(spillWritePos);
+            } catch (IOException truncateError) {
+                LOG.event(Level.ERROR, "spill_error", "sink", name, "error", truncateError.getMessage());
+            }
+        }
+    }
+
+    // Called with the lock held
+    private Entry<T> readSpill() {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+            spill.read(header, spillReadPos);
+            header.flip();
+            int length = header.getInt();
+            long enqueuedAt = header.getLong();
+
+            ByteBuffer data = ByteBuffer.allocate(length);
+            while (data.hasRemaining()) {
+                if (spill.read(data, spillReadPos + header.capacity() + data.position()) < 0) {
+                    throw new IOException("Truncated spill record");
+                }
+            }
+
+            spillReadPos += header.capacity() + length;
+            spillRecords--;
+            if (spillRecords == 0) {
+                resetSpill();
+            } else {
+                spill.write(ByteBuffer.allocate(Long.BYTES).putLong(0, spillReadPos), 0);
+                long consumed = spillReadPos - SPILL_HEADER;
+                if (consumed >= SPILL_COMPACT_BYTES && consumed >= spillWritePos - spillReadPos) {
+                    compactSpill();
+                }
+            }
+            return new Entry<>(codec.decode(data.array()), enqueuedAt);
+        } catch (IOException | RuntimeException e) {
+            LOG.event(Level.ERROR, "spill_read_error", "sink", name, "error", e.toString());
+            dropped.add(spillRecords);
+            resetSpillQuietly();
+            return null;
+        }
+    }
+
+    private void resetSpill() throws IOException {
+        spill.truncate(SPILL_HEADER);
+        spill.write(ByteBuffer.allocate(Long.BYTES).putLong(0, SPILL_HEADER), 0);
+        spillReadPos = SPILL_HEADER;
+        spillWritePos = SPILL_HEADER;
+        spillRecords = 0;
+    }
+
+    private void resetSpillQuietly() {
+        try {
+            resetSpill();
+        } catch (IOException e) {
+            System.err.println("[Sink " + name + "] Could not reset spill file: " + e.getMessage());
+        }
+    }
+
+    // The item being retried is the oldest one; close() decides what to do with it
+    private void requeueOnClose(Entry<T> entry) {
+        lock.lock();
+        try {
+            if (!closed) {
+                queue.addFirst(entry);
+            }
+            // Otherwise close() gave up waiting and already saved it
+            inFlight = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held; a failure leaves the current file as it was
+    private void compactSpill() {
+        try {
+            rewriteSpill(false);
+        } catch (IOException e) {
+            LOG.event(Level.WARN, "spill_compact_error", "sink", name, "error", e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the spill file with one holding only the pending records, preceded by the queued
+     * items when {@code withQueue} is set (they are older than anything in the file).
+     * Called with the lock held.
+     */
+    private void rewriteSpill(boolean withQueue) throws IOException {
+        Path temporary = spillPath.resolveSibling(name + ".spill.tmp");
+        long position = SPILL_HEADER;
+        long records = spillRecords;
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.allocate(Long.BYTES).putLong(0, SPILL_HEADER), 0);
+            if (withQueue) {
+                for (Entry<T> entry : queue) {
+                    byte[] data = codec.encode(entry.item);
+                    ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + data.length);
+                    record.putInt(data.length).putLong(entry.enqueuedAt).put(data).flip();
+                    while (record.hasRemaining()) {
+                        position += out.write(record, position);
+                    }
+                    records++;
+                }
+            }
+
+            long from = spillReadPos;
+            while (from < spillWritePos) {
+                long copied = spill.transferTo(from, spillWritePos - from, out.position(position));
+                from += copied;
+                position += copied;
+            }
+            out.force(false);
+        }
+
+        Files.move(temporary, spillPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        spill.close();
+        spill = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        spillReadPos = SPILL_HEADER;
+        spillWritePos = position;
+        spillRecords = records;
+        if (withQueue) {
+            spilled.add(queue.size());
+            queue.clear();
+        }
+    }
+
+    /**
+     * Stops the sender. With SPILL, items still queued in memory are written to the spill file
+     * so the next run delivers them. If the sender is still stuck in a send after being interrupted,
+     * its item is saved too; should that send go through after all, the item is delivered twice.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            thread.join(RETRY_MAX_MS);
+            if (thread.isAlive()) {
+                thread.interrupt();
+                thread.join(RETRY_MAX_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            closed = true;
+            if (inFlight != null) {
+                LOG.event(Level.WARN, "close_send_pending", "sink", name);
+                queue.addFirst(inFlight);
+                inFlight = null;
+            }
+
+            if (policy != OverflowPolicy.SPILL) {
+                dropped.add(queue.size());
+                queue.clear();
+            } else if (spillRecords > 0 && !queue.isEmpty()) {
+                rewriteSpill(true);
+            } else {
+                Entry<T> entry;
+                while ((entry = queue.poll()) != null) {
+                    spill(entry);
+                }
+            }
+            if (spill != null) {
+                spill.force(false);
+                spill.close();
+            }
+        } catch (IOException e) {
+            System.err.println("[Sink " + name + "] Could not close spill file: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        SINKS.remove(name, this);
+    }
+
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> map = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            Entry<T> head = queue.peek();
+            long oldest = inFlightSince != 0 ? inFlightSince : head != null ? head.enqueuedAt : 0;
+            map.put("policy", policy.name());
+            map.put("capacity", capacity);
+            map.put("queued", queue.size());
+            map.put("spilledPending", spillRecords);
+            map.put("spillBytes", spillWritePos - spillReadPos);
+            map.put("lagMs", oldest != 0 ? now - oldest : 0);
+        } finally {
+            lock.unlock();
+        }
+        map.put("lastLagMs", lastLagMs);
+        map.put("maxLagMs", maxLagMs.get());
+        map.put("enqueued", enqueued.sum());
+        map.put("sent", sent.sum());
+        map.put("dropped", dropped.sum());
+        map.put("spilled", spilled.sum());
+        map.put("retries", retries.sum());
+        return map;
+    }
+
+    public static Map<String, Map<String, Object>> snapshotAll() {
+        Map<String, Map<String, Object>> all = new TreeMap<>();
+        SINKS.forEach((name, sink) -> all.put(name, sink.snapshot()));
+        return all;
+    }
+}
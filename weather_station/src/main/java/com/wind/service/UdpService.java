@@ -5,11 +5,48 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 
+import com.wind.model.DAO.EventLog;
+import com.wind.model.DAO.EventLog.Level;
+
+/**
+ * UDP ingress and egress.
+ *
+ * INGRESS_MODE=nio (default) binds INGRESS_RECEIVERS datagram channels to the ingress port with
+ * SO_REUSEPORT, so the kernel spreads packets across them, and hands each datagram to one of
+ * INGRESS_WORKERS single-threaded workers chosen by sender address. Packets from one
+ * microcontroller are therefore processed in order while different senders run in parallel.
+ * A worker whose queue (INGRESS_QUEUE_SIZE) is full drops the packet instead of stalling the
+ * receiver, which would only move the loss into the kernel buffer.
+ * Without SO_REUSEPORT support a single channel is used.
+ *
+ * INGRESS_MODE=blocking keeps the original single DatagramSocket thread.
+ */
 public class UdpService {
+    private static final EventLog.Category LOG = EventLog.category("udp");
+
+    private static final String INGRESS_MODE = System.getenv().getOrDefault("INGRESS_MODE", "nio");
+    private static final int RECEIVERS = Integer.parseInt(System.getenv().getOrDefault("INGRESS_RECEIVERS",
+            String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
+    private static final int WORKERS = Integer.parseInt(System.getenv().getOrDefault("INGRESS_WORKERS",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int QUEUE_SIZE = Integer.parseInt(System.getenv().getOrDefault("INGRESS_QUEUE_SIZE", "4096"));
+    private static final int MAX_DATAGRAM = Integer.parseInt(System.getenv().getOrDefault("INGRESS_BUFFER_SIZE", "2048"));
 
     private final int ingressPort;
     private final String egressHost;
@@ -19,6 +56,11 @@ public class UdpService {
     private DatagramSocket egressSocket;
     private volatile boolean isRunning = true;
 
+    private final List<DatagramChannel> ingressChannels = new ArrayList<>();
+    private final List<ThreadPoolExecutor> workers = new ArrayList<>();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
     public UdpService(int ingressPort, String egressHost, int egressPort) {
         this.ingressPort = ingressPort;
         this.egressHost = egressHost;
@@ -31,6 +73,113 @@ public class UdpService {
     }
 
     public void startIngressListener(BiConsumer<String, InetSocketAddress> messageProcessor) {
+        if ("blocking".equalsIgnoreCase(INGRESS_MODE)) {
+            startBlockingIngress(messageProcessor);
+            return;
+        }
+
+        try {
+            startNioIngress(messageProcessor);
+        } catch (IOException e) {
+            System.err.println("[Ingress UDP] Could not bind to port " + ingressPort + ": " + e.getMessage());
+        }
+    }
+
+    private void startNioIngress(BiConsumer<String, InetSocketAddress> messageProcessor) throws IOException {
+        for (int i = 0; i < Math.max(1, WORKERS); i++) {
+            ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_SIZE), namedThread("udp-worker-" + i),
+                    (task, executor) -> {
+                        dropped.increment();
+                        LOG.event(Level.WARN, "queue_full", "dropped", dropped.sum());
+                    });
+            workers.add(worker);
+        }
+
+        DatagramChannel first = openChannel();
+        ingressChannels.add(first);
+        boolean reusePort = first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        for (int i = 1; reusePort && i < RECEIVERS; i++) {
+            ingressChannels.add(openChannel());
+        }
+        if (!reusePort && RECEIVERS > 1) {
+            System.out.println("[Ingress UDP] SO_REUSEPORT not supported, using a single receiver.");
+        }
+
+        for (int i = 0; i < ingressChannels.size(); i++) {
+            DatagramChannel channel = ingressChannels.get(i);
+            // Not a daemon, like the blocking listener: the receivers keep the station running
+            new Thread(() -> receive(channel, messageProcessor), "udp-receiver-" + i).start();
+        }
+        System.out.println("[Ingress UDP] NIO ingress on port " + ingressPort + ": "
+                + ingressChannels.size() + " receiver(s), " + workers.size() + " worker(s).");
+    }
+
+    private DatagramChannel openChannel() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        if (channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+        channel.bind(new InetSocketAddress(ingressPort));
+        return channel;
+    }
+
+    private void receive(DatagramChannel channel, BiConsumer<String, InetSocketAddress> messageProcessor) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM);
+        while (isRunning) {
+            try {
+                buffer.clear();
+                SocketAddress address = channel.receive(buffer);
+                if (address == null) {
+                    continue;
+                }
+                received.increment();
+
+                InetSocketAddress sender = (InetSocketAddress) address;
+                String rawPayload = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+                if (LOG.isEnabled(Level.TRACE)) {
+                    LOG.event(Level.TRACE, "rcv", "sender", sender, "payload", rawPayload);
+                } else if (LOG.isEnabled(Level.DEBUG)) {
+                    LOG.event(Level.DEBUG, "rcv", "sender", sender, "bytes", buffer.position());
+                }
+
+                // Same sender, same worker: keeps each microcontroller's readings in order
+                ThreadPoolExecutor worker = workers.get(Math.floorMod(sender.hashCode(), workers.size()));
+                worker.execute(() -> {
+                    try {
+                        messageProcessor.accept(rawPayload, sender);
+                    } catch (RuntimeException e) {
+                        LOG.event(Level.ERROR, "process_error", "sender", sender, "error", e.toString());
+                    }
+                });
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (isRunning) {
+                    LOG.event(Level.WARN, "rcv_error", "error", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory namedThread(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void startBlockingIngress(BiConsumer<String, InetSocketAddress> messageProcessor) {
         new Thread(() -> {
             try {
                 ingressSocket = new DatagramSocket(ingressPort);
@@ -44,14 +193,17 @@ public class UdpService {
                         
                         InetSocketAddress sender = new InetSocketAddress(packet.getAddress(), packet.getPort());
 
-                        System.out.println("\n-> [UDP RCV] From: " + sender);
-                        System.out.println("   Payload: " + rawPayload);
+                        if (LOG.isEnabled(Level.TRACE)) {
+                            LOG.event(Level.TRACE, "rcv", "sender", sender, "payload", rawPayload);
+                        } else if (LOG.isEnabled(Level.DEBUG)) {
+                            LOG.event(Level.DEBUG, "rcv", "sender", sender, "bytes", packet.getLength());
+                        }
 
                         messageProcessor.accept(rawPayload, sender);
 
                     } catch (IOException e) {
                         if (isRunning) {
-                            System.err.println("[Ingress UDP] Error receiving packet: " + e.getMessage());
+                            LOG.event(Level.WARN, "rcv_error", "error", e.getMessage());
                         }
                     }
                 }
@@ -61,7 +213,10 @@ public class UdpService {
         }).start();
     }
 
-    public void send(String payload) {
+    /**
+     * @return false if the egress socket is unavailable or the send failed.
+     */
+    public boolean send(String payload) {
         try {
             if (egressSocket != null && !egressSocket.isClosed()) {
                 byte[] data = payload.getBytes(StandardCharsets.UTF_8);
@@ -69,13 +224,16 @@ public class UdpService {
                 DatagramPacket packet = new DatagramPacket(data, data.length, address, egressPort);
 
                 egressSocket.send(packet);
-                System.out.println("<- [EGRESS UDP] Sent to " + egressHost + ":" + egressPort);
-            } else {
-                System.err.println("[EGRESS UDP] Cannot send, socket not available.");
+                if (LOG.isEnabled(Level.DEBUG)) {
+                    LOG.event(Level.DEBUG, "sent", "target", egressHost + ":" + egressPort, "bytes", data.length);
+                }
+                return true;
             }
+            LOG.event(Level.WARN, "send_unavailable");
         } catch (IOException e) {
-            System.err.println("[EGRESS UDP] Error sending packet: " + e.getMessage());
+            LOG.event(Level.WARN, "send_error", "error", e.getMessage());
         }
+        return false;
     }
 
     public void stop() {
@@ -83,6 +241,16 @@ public class UdpService {
         if (ingressSocket != null && !ingressSocket.isClosed()) {
             ingressSocket.close();
         }
+        for (DatagramChannel channel : ingressChannels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("[Ingress UDP] Error closing channel: " + e.getMessage());
+            }
+        }
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
         if (egressSocket != null && !egressSocket.isClosed()) {
             egressSocket.close();
         }